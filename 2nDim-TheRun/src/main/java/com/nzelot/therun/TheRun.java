@@ -54,8 +54,8 @@ public class TheRun {
                 Universe u = new Universe(this);
                 u.setGravity(new Vector2(0, -9.81f * 1/16.0f));
 
-                Texture t = TextureManager.instance.create("sprite_run", ResourceUtils.getResourceStream("res/tex/sprite_run.png"));
-                AnimatedSprite s = new AnimatedSprite("Runner", 3.1, 4.025, t, 0, 9, 3, 4, 124/512.0f, 161/512.0f);
+                Texture t = TextureManager.current().create("sprite_run", ResourceUtils.getResourceStream("res/tex/sprite_run.png"));
+                AnimatedSprite s = new AnimatedSprite("Runner", 3.1, 4.025, t, 0, 9, 3 / 60.0, 4, 124/512.0f, 161/512.0f);
                 //Sprite s = new Sprite("Runner", 12.4, 16.1, t, 0, 4, 124/512.0f, 161/512.0f);
                 //TexturedRectangle s = new TexturedRectangle("runner", 20, 20, t);
                 //ColoredRectangle s = new ColoredRectangle("runner", 20, 20, new Color(0.4f, 0.8f, 0.2f));
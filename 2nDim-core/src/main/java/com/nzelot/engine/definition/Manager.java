@@ -24,43 +24,102 @@
 
 package com.nzelot.engine.definition;
 
+import com.nzelot.engine.graphics.rendering.GLCommandQueue;
 import com.nzelot.engine.graphics.rendering.ShaderManager;
 import com.nzelot.engine.utils.logging.Logger;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.NonNull;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Keeps GL objects by key. The managers may be used from any thread: the GL work is handed over to the thread owning
+ * the GL context through the <code>GLCommandQueue</code>, the calling thread waits for it. The <code>createAsync</code>
+ * methods of the implementing managers return right away instead.
+ *
  * @author nZeloT
  */
 public abstract class Manager<E extends ManagedObject> {
 
     protected Map<String, E> objects;
 
+    /** runs the GL work on the thread owning the context */
+    private final @Getter(AccessLevel.PROTECTED) GLCommandQueue commands;
+
     private boolean init;
 
+    /**
+     * without a GL context no managed object can be created. If set the manager skips its standard objects and
+     * hands out <code>null</code> instead of creating new objects.
+     */
+    private @Getter boolean headless;
+
+    protected Manager(@NonNull GLCommandQueue commands) {
+        this.commands = commands;
+    }
+
     protected abstract void initSTD(Map<String, E> map);
 
     public E get(@NonNull String key) {
         E s = objects.get(key);
 
-        if (s == null) {
+        if (s == null && !headless) {
             Logger.log(ShaderManager.class, "Tried to access non existent managed object with key: " + key, Logger.LEVEL.WARNING);
         }
 
         return s;
     }
 
-    public void init() {
+    /**
+     * store a newly created object unless another thread stored one under the same key in the meantime; the new
+     * object is deleted again in that case
+     *
+     * @param key    the key of the object
+     * @param object the new object
+     * @return false if the key was already taken
+     */
+    protected boolean store(@NonNull String key, @NonNull E object) {
+        if (objects.putIfAbsent(key, object) == null)
+            return true;
+
+        commands.invoke((Runnable) object::delete);
+        return false;
+    }
+
+    /**
+     * delete a single managed object and forget about it
+     *
+     * @param key the key of the object
+     */
+    public void remove(@NonNull String key) {
+        E s = objects.remove(key);
+
+        if (s == null) {
+            Logger.log(Manager.class, "Tried to remove non existent managed object with key: " + key, Logger.LEVEL.WARNING);
+            return;
+        }
+
+        commands.invoke((Runnable) s::delete);
+    }
+
+    /**
+     * set up the manager. This will be called from within the engine.
+     *
+     * @param headless whether there is no GL context
+     */
+    public void init(boolean headless) {
         //prevent from calling this multiple times
         if (!init) {
+            this.headless = headless;
 
-            objects = new HashMap<>();
+            objects = new ConcurrentHashMap<>();
 
             //load all the standard objects as defined by the implementing managers
-            initSTD(objects);
+            if (!headless)
+                initSTD(objects);
 
             init = true;
         }
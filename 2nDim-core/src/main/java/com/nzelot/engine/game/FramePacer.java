@@ -0,0 +1,247 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.game;
+
+import com.nzelot.engine.graphics.Window;
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides when a frame is rendered and how long the game thread waits afterwards.<br>
+ * The pacer also keeps statistics of the time between two rendered frames, so the modes can be compared by their
+ * mean frame time and its variance.
+ *
+ * @author nZeloT
+ */
+public class FramePacer {
+
+    public enum Mode {
+        /** render as fast as possible */
+        UNLIMITED,
+        /** wait for the vertical blank before swapping the buffers */
+        VSYNC,
+        /** vsync, but late frames are swapped right away; falls back to <code>VSYNC</code> if not supported */
+        ADAPTIVE_VSYNC,
+        /** render at most <code>targetFPS</code> frames per second; sleeps first and spins for the last bit */
+        CAPPED,
+        /**
+         * only render after something changed what is rendered: objects moved, were added or removed, their render
+         * state, the camera or the input changed, or <code>Game.requestRedraw()</code> was called.
+         * Never faster than <code>targetFPS</code>
+         */
+        ON_CHANGE
+    }
+
+    private static final String[] TEAR_EXTENSIONS = {"WGL_EXT_swap_control_tear", "GLX_EXT_swap_control_tear"};
+
+    //stop sleeping this long before the deadline and spin instead; sleeping is not precise enough
+    private static final long SPIN_THRESHOLD = 1000000L;
+
+    private @Getter Mode mode;
+    private @Getter int targetFPS;
+    private boolean changed;
+
+    private long nextFrame;
+
+    private long lastFrame;
+    private @Getter long frameCount;
+    private double mean;
+    private double m2;
+    private @Getter double minFrameTime;
+    private @Getter double maxFrameTime;
+
+    public FramePacer() {
+        this.mode = Mode.VSYNC;
+        this.targetFPS = 60;
+        this.changed = true;
+        resetStatistics();
+    }
+
+    public void setMode(@NonNull Mode mode) {
+        this.mode = mode;
+        this.changed = true;
+        resetStatistics();
+    }
+
+    /**
+     * @param targetFPS the frame rate of <code>CAPPED</code> and <code>ON_CHANGE</code>
+     */
+    public void setTargetFPS(int targetFPS) {
+        if (targetFPS <= 0) {
+            Logger.log(FramePacer.class, "Invalid target frame rate: " + targetFPS, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid target frame rate: " + targetFPS);
+        }
+
+        this.targetFPS = targetFPS;
+    }
+
+    /**
+     * @param stateChanged whether something changed what is rendered since the last frame
+     * @return true if a frame should be rendered now
+     */
+    public boolean shouldRender(boolean stateChanged) {
+        return mode != Mode.ON_CHANGE || stateChanged;
+    }
+
+    /**
+     * apply a changed mode to the window. Has to be called from the thread owning the context.
+     */
+    public void apply(@NonNull Window window) {
+        if (!changed)
+            return;
+
+        switch (mode) {
+            case VSYNC:
+                window.setSwapInterval(1);
+                break;
+            case ADAPTIVE_VSYNC:
+                if (supportsTear(window)) {
+                    window.setSwapInterval(-1);
+                } else {
+                    Logger.log(FramePacer.class, "Adaptive vsync is not supported; using vsync", Logger.LEVEL.WARNING);
+                    window.setSwapInterval(1);
+                }
+                break;
+            default:
+                window.setSwapInterval(0);
+        }
+
+        nextFrame = System.nanoTime();
+        changed = false;
+    }
+
+    /**
+     * record that a frame was just presented
+     */
+    public void frameRendered() {
+        long now = System.nanoTime();
+
+        if (lastFrame != 0) {
+            //Welford's online algorithm keeps the variance stable without storing the samples
+            double ms = (now - lastFrame) / 1000000.0;
+            frameCount++;
+            double d = ms - mean;
+            mean += d / frameCount;
+            m2 += d * (ms - mean);
+
+            minFrameTime = Math.min(minFrameTime, ms);
+            maxFrameTime = Math.max(maxFrameTime, ms);
+        }
+
+        lastFrame = now;
+    }
+
+    /**
+     * wait as long as the mode requires before the next iteration of the game loop
+     */
+    public void sync() {
+        if (mode != Mode.CAPPED && mode != Mode.ON_CHANGE)
+            return;
+
+        long period = 1000000000L / targetFPS;
+        long now = System.nanoTime();
+
+        nextFrame += period;
+        //do not try to catch up on frames missed during a stall
+        if (nextFrame < now - period)
+            nextFrame = now;
+
+        waitUntil(nextFrame);
+    }
+
+    /**
+     * the time until which the loop may do other work after a frame without delaying the next one.
+     * With a frame cap this is the time <code>sync()</code> would wait for. With vsync only half of the frame period
+     * is handed out, the other half is left for updating and rendering the next frame. Unlimited frames have no spare time.
+     *
+     * @return the deadline as <code>System.nanoTime()</code>
+     */
+    public long getFrameDeadline() {
+        switch (mode) {
+            case CAPPED:
+            case ON_CHANGE:
+                return Math.max(nextFrame + 1000000000L / targetFPS, System.nanoTime());
+            case VSYNC:
+            case ADAPTIVE_VSYNC:
+                //the refresh rate is unknown until frames got measured; assume 60 Hz
+                long period = frameCount > 0 ? (long) (mean * 1000000) : 1000000000L / 60;
+                return lastFrame + period / 2;
+            default:
+                return System.nanoTime();
+        }
+    }
+
+    /**
+     * @return the mean time between two rendered frames in milliseconds
+     */
+    public double getMeanFrameTime() {
+        return mean;
+    }
+
+    /**
+     * @return the variance of the time between two rendered frames in square milliseconds
+     */
+    public double getFrameTimeVariance() {
+        return frameCount > 1 ? m2 / (frameCount - 1) : 0;
+    }
+
+    public void resetStatistics() {
+        lastFrame = 0;
+        frameCount = 0;
+        mean = 0;
+        m2 = 0;
+        minFrameTime = Double.POSITIVE_INFINITY;
+        maxFrameTime = 0;
+    }
+
+    /**
+     * @return a short summary of the frame time statistics
+     */
+    public String describe() {
+        return String.format("%s: %.2f ms mean, %.3f ms^2 variance, %.2f - %.2f ms",
+                mode, getMeanFrameTime(), getFrameTimeVariance(),
+                frameCount > 0 ? minFrameTime : 0, maxFrameTime);
+    }
+
+    private static boolean supportsTear(Window window) {
+        for (String ext : TEAR_EXTENSIONS)
+            if (window.isExtensionSupported(ext))
+                return true;
+        return false;
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > SPIN_THRESHOLD)
+            LockSupport.parkNanos(remaining - SPIN_THRESHOLD);
+
+        while (System.nanoTime() < deadline) {
+            //spin
+        }
+    }
+}
@@ -26,10 +26,17 @@ package com.nzelot.engine.game;
 
 import com.nzelot.engine.graphics.Window;
 import com.nzelot.engine.graphics.rendering.*;
+import com.nzelot.engine.graphics.scenegraph.RenderSnapshot;
+import com.nzelot.engine.graphics.scenegraph.SnapshotBuffer;
 import com.nzelot.engine.graphics.scenegraph.Universe;
 import com.nzelot.engine.utils.logging.Logger;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
 import third.party.SharedLibraryLoader;
 
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * The base class for a game. Engine initialization and so forth (i.e. all the boilerplate code) is done for you.<br>
  *
@@ -42,16 +49,125 @@ public abstract class Game {
     private Universe universe;
     private Window window;
 
-    private boolean running;
-    private int targetFPS;
+    private volatile boolean running;
+
+    /** decides when frames are rendered; vsync by default */
+    private final @Getter FramePacer pacer;
+
+    /** runs the per object work of the universe on all cores */
+    private @Getter JobSystem jobs;
+
+    /** runs low priority work in the spare time between frames */
+    private final @Getter TaskScheduler scheduler;
+
+    /** the managers and renderers of this game; bound to every thread working for the game */
+    private final @Getter EngineContext context;
+
+    /**
+     * run the simulation on its own thread while the game thread only renders published snapshots.
+     * Has to be set before the game is started; disabled by default
+     */
+    private @Getter @Setter boolean threaded;
+
+    /**
+     * run without a window and GL context; see <code>setHeadless(long)</code>
+     */
+    private @Getter boolean headless;
+
+    /** the number of simulation steps a headless game runs */
+    private @Getter long headlessTicks;
+
+    /** captures the input of every simulation step; none by default */
+    private @Getter @Setter InputRecorder inputRecorder;
+
+    //feeds recorded input instead of the window's; set by the replay
+    private @Setter(AccessLevel.PACKAGE) InputReplay inputReplay;
+
+    /** the length of a single simulation step in seconds */
+    private @Getter double timeStep;
+
+    /** the maximum number of simulation steps per rendered frame; time beyond that is dropped */
+    private @Getter int maxStepsPerFrame;
+
+    /** the progress from the previous to the current simulation step at the time of rendering */
+    private @Getter double interpolationAlpha;
+
+    /** the number of simulation steps dropped because the machine could not keep up */
+    private @Getter long droppedSteps;
+
+    //the fixed step state; only touched by the thread running the simulation
+    private long lastStepTime;
+    private double accumulator;
+    private volatile long ticks;
+
+    //set by update() if a step changed what is rendered; only touched by the thread running the simulation
+    private boolean stepChanged;
+
+    //a frame has to be rendered even in ON_CHANGE mode
+    private volatile boolean redraw = true;
+
+    //what stopped the simulation thread; rethrown on the game thread
+    private volatile Throwable simulationFailure;
 
     //doc
     public Game(int width, int height, boolean fullscreen, String windowTitle) {
         this.running    = false;
-        this.targetFPS  = 60;
+        this.timeStep   = 1.0 / 60;
+        this.maxStepsPerFrame = 5;
+        this.interpolationAlpha = 1;
+        this.pacer = new FramePacer();
+        this.jobs = new JobSystem();
+        this.context = new EngineContext();
+        this.scheduler = new TaskScheduler();
         this.window = new Window(windowTitle, width, height, fullscreen);
     }
 
+    /**
+     * set the number of simulation steps per second
+     *
+     * @param updatesPerSecond the update rate; 60 by default
+     */
+    public void setUpdateRate(int updatesPerSecond) {
+        if (updatesPerSecond <= 0) {
+            Logger.log(Game.class, "Invalid update rate: " + updatesPerSecond, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid update rate: " + updatesPerSecond);
+        }
+
+        this.timeStep = 1.0 / updatesPerSecond;
+    }
+
+    /**
+     * run the game without a window and without a GL context, e.g. on a server. The simulation runs <code>ticks</code>
+     * steps as fast as possible and reports the reached ticks per second. Nothing is rendered and there is no input.<br>
+     * The managers hand out <code>null</code> instead of GL objects, so <code>initGame()</code> must not touch GL.
+     * Has to be set before the game is started.
+     *
+     * @param ticks the number of simulation steps to run
+     */
+    public void setHeadless(long ticks) {
+        if (ticks <= 0) {
+            Logger.log(Game.class, "Invalid number of headless ticks: " + ticks, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid number of headless ticks: " + ticks);
+        }
+
+        this.headless = true;
+        this.headlessTicks = ticks;
+    }
+
+    /**
+     * limit the number of simulation steps run to catch up before the next frame is rendered
+     *
+     * @param maxStepsPerFrame the maximum number of steps; 5 by default
+     */
+    public void setMaxStepsPerFrame(int maxStepsPerFrame) {
+        if (maxStepsPerFrame <= 0) {
+            Logger.log(Game.class, "Invalid number of steps per frame: " + maxStepsPerFrame, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid number of steps per frame: " + maxStepsPerFrame);
+        }
+
+        this.maxStepsPerFrame = maxStepsPerFrame;
+    }
+
     /**
      * Kick-off the game. Here starts the magic :)<br>
      * <p>
@@ -67,38 +183,57 @@ public abstract class Game {
     //doc
     void run() {
         if (!running) {
-            initEngine();
+            EngineContext previous = EngineContext.bind(context);
 
-            universe = initGame();
+            try {
+                initEngine();
 
-            if (universe == null) {
-                Logger.log(Game.class, "No Universe defined!", Logger.LEVEL.ERROR);
-                throw new IllegalStateException("No Universe defined!");
-            }
+                universe = initGame();
+
+                if (universe == null) {
+                    Logger.log(Game.class, "No Universe defined!", Logger.LEVEL.ERROR);
+                    throw new IllegalStateException("No Universe defined!");
+                }
 
-            enterGameLoop();
+                enterGameLoop();
 
-            endGame();
+                if (inputRecorder != null)
+                    inputRecorder.finish(ticks, universe.stateHash());
+                if (inputReplay != null)
+                    inputReplay.finish(ticks, universe.stateHash());
 
-            endEngine();
+                endGame();
+
+                endEngine();
+            } finally {
+                EngineContext.bind(previous);
+            }
         }
     }
 
+    /**
+     * replace the job system, e.g. by a sequential one if the game shares the cores with other games
+     */
+    void useJobs(JobSystem jobs) {
+        this.jobs.shutdown();
+        this.jobs = jobs;
+    }
+
     /**
      * init the rendering platform and set up required stuff. i.e. create the window and initialize the different managers.
      */
     private void initEngine() {
-        SharedLibraryLoader.load();
+        if (!headless) {
+            SharedLibraryLoader.load();
 
-        if (!window.init()) {
-            Logger.log(Game.class, "Could not init Engine!", Logger.LEVEL.ERROR);
-            throw new RuntimeException("Could not Initialize Engine!");
+            if (!window.init()) {
+                Logger.log(Game.class, "Could not init Engine!", Logger.LEVEL.ERROR);
+                throw new RuntimeException("Could not Initialize Engine!");
+            }
         }
 
-        TextureManager.instance.init();
-        VertexArrayManager.instance.init();
-        ShaderManager.instance.init();
-        FrameBufferManager.instance.init();
+        //headless the managers only set up their bookkeeping
+        context.init(headless);
     }
 
     /**
@@ -110,39 +245,52 @@ public abstract class Game {
     protected abstract Universe initGame();
 
     /**
-     * the real game loop. calls <code>update()</code> and <code>render()</code> every frame.
+     * the real game loop. The simulation advances in fixed steps of <code>timeStep</code> seconds: every frame runs as
+     * many <code>update()</code> calls as the elapsed time requires, but at most <code>maxStepsPerFrame</code>.
+     * <code>render()</code> then blends between the last two steps by the time left over.
      * it also checks for window close requests
      */
     private void enterGameLoop(){
+        if (headless) {
+            enterHeadlessLoop();
+            return;
+        }
+
+        if (threaded) {
+            enterThreadedLoop();
+            return;
+        }
 
-        long lastTime = System.nanoTime();
-        double delta = 0.0d;
-        double ns = 1000000000.0 / targetFPS;
         long timer = System.currentTimeMillis();
-        int updates = 0;
+        long lastTicks = 0;
         int frames = 0;
 
         this.running = true;
+        this.lastStepTime = System.nanoTime();
+        this.accumulator = 0;
 
         while (running){
 
-            long now = System.nanoTime();
-            delta += (now - lastTime) / ns;
-            lastTime = now;
+            advance();
+            publishChanges();
 
-            if (delta >= 1.0) {
-                update(delta);
-                updates++;
-                delta--;
-            }
+            //the GL work other threads handed over
+            context.getCommandQueue().execute();
 
-            render();
-            frames++;
+            pacer.apply(window);
+            if (pacer.shouldRender(redraw)) {
+                redraw = false;
+                render();
+                frames++;
+                pacer.frameRendered();
+            }
+            scheduler.run(pacer.getFrameDeadline());
+            pacer.sync();
 
             if (System.currentTimeMillis() - timer > 1000) {
                 timer += 1000;
-                Logger.log(Game.class, updates + " ups " + frames + " fps", Logger.LEVEL.INFO);
-                updates = 0;
+                logStats(ticks - lastTicks, frames);
+                lastTicks = ticks;
                 frames = 0;
             }
 
@@ -152,6 +300,212 @@ public abstract class Game {
 
     }
 
+    /**
+     * the game loop if <code>threaded</code> is set. A simulation thread runs the fixed steps and records a
+     * <code>RenderSnapshot</code> after each batch of steps, while this thread keeps the GL context and draws the
+     * newest snapshot. So tick N+1 is simulated while frame N is drawn.
+     * <p>
+     * <code>updateGame()</code> runs on the simulation thread, <code>renderGame()</code> on the render thread.
+     * Snapshots are drawn as they are, without interpolation. If the simulation fails the loop stops and the failure
+     * is rethrown on this thread.
+     */
+    private void enterThreadedLoop() {
+        SnapshotBuffer snapshots = new SnapshotBuffer();
+
+        long timer = System.currentTimeMillis();
+        long lastTicks = 0;
+        int frames = 0;
+
+        this.running = true;
+        this.interpolationAlpha = 1;
+        this.simulationFailure = null;
+
+        //nothing can be drawn before the first snapshot was published
+        boolean acquired = false;
+
+        Thread simulation = new Thread(() -> simulate(snapshots), "2nDim-simulation");
+        simulation.start();
+
+        try {
+            while (running) {
+
+                window.pollEvents();
+                context.getCommandQueue().execute();
+                pacer.apply(window);
+
+                //draw every new snapshot; ON_CHANGE only draws if a snapshot changed something or a redraw was requested
+                boolean due = pacer.getMode() == FramePacer.Mode.ON_CHANGE
+                        ? redraw && (snapshots.hasFresh() || acquired)
+                        : snapshots.hasFresh();
+
+                if (due) {
+                    redraw = false;
+                    RenderSnapshot snapshot = snapshots.acquire();
+                    acquired = true;
+
+                    window.clear();
+                    renderGame();
+                    universe.render(snapshot);
+                    window.update();
+                    frames++;
+
+                    pacer.frameRendered();
+                    scheduler.run(pacer.getFrameDeadline());
+                    pacer.sync();
+                } else {
+                    //nothing new to draw yet
+                    LockSupport.parkNanos(100000);
+                }
+
+                if (System.currentTimeMillis() - timer > 1000) {
+                    timer += 1000;
+                    logStats(ticks - lastTicks, frames);
+                    lastTicks = ticks;
+                    frames = 0;
+                }
+
+                if (window.closed())
+                    running = false;
+            }
+        } finally {
+            //a failing frame stops the simulation as well
+            running = false;
+            awaitSimulation(simulation);
+        }
+
+        Throwable failure = simulationFailure;
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+    }
+
+    //wait for the simulation thread to finish; it may be waiting for GL work, so keep running the queued commands
+    private void awaitSimulation(Thread simulation) {
+        boolean interrupted = false;
+
+        while (simulation.isAlive()) {
+            context.getCommandQueue().execute();
+            try {
+                simulation.join(1);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * the game loop if <code>headless</code> is set. Runs <code>headlessTicks</code> simulation steps back to back
+     * without waiting for the time to pass and reports the throughput.
+     */
+    private void enterHeadlessLoop() {
+        long start = System.nanoTime();
+        long timer = System.currentTimeMillis();
+        long lastTicks = 0;
+
+        this.running = true;
+        this.interpolationAlpha = 1;
+
+        while (running && ticks < headlessTicks) {
+            update(timeStep);
+            ticks++;
+
+            if (System.currentTimeMillis() - timer > 1000) {
+                timer += 1000;
+                Logger.log(Game.class, (ticks - lastTicks) + " ups; " + jobs.describe(), Logger.LEVEL.INFO);
+                lastTicks = ticks;
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1000000000.0;
+        Logger.log(Game.class, "Headless run: " + ticks + " ticks in " + String.format("%.3f", seconds) + " s; "
+                + String.format("%.1f", ticks / seconds) + " ticks/s", Logger.LEVEL.INFO);
+
+        this.running = false;
+    }
+
+    //the body of the simulation thread; a failure stops the game and is handed to the game thread
+    private void simulate(SnapshotBuffer snapshots) {
+        EngineContext.bind(context);
+
+        this.lastStepTime = System.nanoTime();
+        this.accumulator = 0;
+
+        try {
+            while (running) {
+                if (advance() > 0) {
+                    universe.record(snapshots.getWriteSnapshot(), ticks);
+                    snapshots.publish();
+                    publishChanges();
+                } else {
+                    //sleep until the next step is due
+                    LockSupport.parkNanos((long) ((timeStep - accumulator) * 1000000000.0));
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            Logger.log(Game.class, "The simulation failed after " + ticks + " ticks: " + e, Logger.LEVEL.ERROR);
+            simulationFailure = e;
+            running = false;
+        }
+    }
+
+    /**
+     * run the simulation steps the time passed since the last call requires
+     *
+     * @return the number of steps run
+     */
+    private int advance() {
+        long now = System.nanoTime();
+        accumulator += (now - lastStepTime) / 1000000000.0;
+        lastStepTime = now;
+
+        int steps = 0;
+        while (accumulator >= timeStep && steps < maxStepsPerFrame) {
+            update(timeStep);
+            accumulator -= timeStep;
+            ticks++;
+            steps++;
+        }
+
+        //after a stall drop the time we can not catch up on instead of spiralling into ever longer frames
+        if (accumulator >= timeStep) {
+            long dropped = (long) (accumulator / timeStep);
+            droppedSteps += dropped;
+            accumulator -= dropped * timeStep;
+        }
+
+        if (!threaded)
+            interpolationAlpha = accumulator / timeStep;
+
+        return steps;
+    }
+
+    /**
+     * render the next frame even if the frame pacer is in <code>ON_CHANGE</code> mode and the simulation did not
+     * change anything, e.g. because <code>renderGame()</code> draws something new
+     */
+    public void requestRedraw() {
+        redraw = true;
+    }
+
+    //hand the changes of the steps run so far to the render loop
+    private void publishChanges() {
+        if (stepChanged) {
+            stepChanged = false;
+            redraw = true;
+        }
+    }
+
+    private void logStats(long updates, int frames) {
+        Logger.log(Game.class, updates + " ups " + frames + " fps; "
+                + universe.getVisibleCount() + " visible " + universe.getCulledCount() + " culled "
+                + universe.getMovedCount() + " moved; "
+                + pacer.describe() + "; " + jobs.describe() + "; " + scheduler.describe(), Logger.LEVEL.INFO);
+    }
+
     /**
      * called after the game loop has ended. Use it to e.g. save the game state and free self allocated data
      */
@@ -161,30 +515,44 @@ public abstract class Game {
      * shutdown the rendering platform and tear down required stuff
      */
     private void endEngine() {
-        FrameBufferManager.instance.exit();
-        ShaderManager.instance.exit();
-        VertexArrayManager.instance.exit();
-        TextureManager.instance.exit();
-        window.exit();
+        context.exit();
+
+        if (!headless)
+            window.exit();
+
+        jobs.shutdown();
     }
 
     /**
      * update the scenegraph the specified amount of time.<br>
      * this calls:
      * <code><ul>
-     *     <li>Window.updateInput()</li>
+     *     <li>Window.updateInput() or the input of the replay</li>
      *     <li>updateGame(delta)</li>
      *     <li>SceneGraph.update(delta)</li>
      * </ul></code> in exactly this order.
-     * @param delta the amount of time to update
+     * @param delta the amount of time to update in seconds
      */
     protected void update(double delta) {
 
-        window.updateInput();
+        //in threaded mode the render thread owns the window and polls the events; headless there is no window
+        if (inputReplay != null) {
+            inputReplay.apply(ticks, window);
+            window.latchInput();
+        } else if (threaded && !headless)
+            window.latchInput();
+        else if (!headless)
+            window.updateInput();
+
+        if (inputRecorder != null)
+            inputRecorder.record(ticks, window);
 
         updateGame(delta);
         universe.update(delta);
 
+        if (universe.pollChanged() || (!headless && window.isInputChanged()))
+            stepChanged = true;
+
     }
 
     /**
@@ -202,14 +570,14 @@ public abstract class Game {
         window.clear();
 
         renderGame();
-        universe.render();
+        universe.render(interpolationAlpha);
 
         window.update();
     }
 
     /**
      * update the game
-     * @param delta the delta time to update
+     * @param delta the delta time to update in seconds
      */
     protected abstract void updateGame(double delta);
 
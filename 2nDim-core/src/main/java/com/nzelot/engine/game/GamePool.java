@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.game;
+
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many headless games side by side on a bounded number of threads, e.g. to evaluate levels or AI in batches.<br>
+ * Every game owns its own engine context, so the games do not share any state except the <code>AssetCache</code>.
+ * Games beyond the number of threads wait until a thread becomes free.
+ *
+ * @author nZeloT
+ */
+public class GamePool {
+
+    private final ExecutorService executor;
+    private final Map<Game, Future<?>> games;
+
+    /**
+     * @param threads the maximum number of games running at the same time
+     */
+    public GamePool(int threads) {
+        if (threads <= 0) {
+            Logger.log(GamePool.class, "Invalid number of threads: " + threads, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> new Thread(r, "2nDim-game-" + count.getAndIncrement()));
+        this.games = new LinkedHashMap<>();
+    }
+
+    /**
+     * queue a game. The pool already keeps the cores busy running games side by side, so the game updates its objects
+     * sequentially instead of using a job system of its own.
+     *
+     * @param game a headless game; see <code>Game.setHeadless(long)</code>
+     */
+    public synchronized void submit(@NonNull Game game) {
+        if (!game.isHeadless()) {
+            Logger.log(GamePool.class, "Only headless games can run within a pool!", Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Only headless games can run within a pool!");
+        }
+
+        if (games.containsKey(game)) {
+            Logger.log(GamePool.class, "Tried to submit a game twice!", Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to submit a game twice!");
+        }
+
+        game.useJobs(new JobSystem(1));
+        games.put(game, executor.submit(game::run));
+    }
+
+    /**
+     * @return the number of games not finished yet
+     */
+    public synchronized int getPendingCount() {
+        int pending = 0;
+        for (Future<?> f : games.values())
+            if (!f.isDone())
+                pending++;
+        return pending;
+    }
+
+    /**
+     * halt all the running games
+     */
+    public synchronized void stopAll() {
+        games.keySet().forEach(Game::haltGameLoop);
+    }
+
+    /**
+     * wait until all the submitted games have finished
+     *
+     * @return the games which failed along with the cause; empty if all of them succeeded
+     */
+    public Map<Game, Throwable> awaitAll() {
+        List<Map.Entry<Game, Future<?>>> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(games.entrySet());
+        }
+
+        Map<Game, Throwable> failures = new LinkedHashMap<>();
+        for (Map.Entry<Game, Future<?>> e : entries) {
+            try {
+                e.getValue().get();
+            } catch (ExecutionException ex) {
+                Logger.log(GamePool.class, "Game failed: " + ex.getCause(), Logger.LEVEL.ERROR);
+                failures.put(e.getKey(), ex.getCause());
+            } catch (InterruptedException ex) {
+                stopAll();
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return failures;
+    }
+
+    /**
+     * stop accepting games. Queued games still run.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.game;
+
+import com.nzelot.engine.graphics.Window;
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Captures the input state of every simulation step into a compact binary log, which an <code>InputReplay</code>
+ * feeds back into a game later on.<br>
+ * Only the steps in which the input changed are written. At the end of the session the number of steps and the
+ * <code>Universe.stateHash()</code> are appended, so a replay can tell whether it reached the same state.
+ * <p>
+ * The log starts with the magic number and the version, followed by records of
+ * <ul>
+ * <li><code>RECORD</code>, the step as long, the length of the state as short and the state as written by
+ * <code>Window.writeInput(DataOutput)</code></li>
+ * <li><code>END</code>, the number of steps as long and the state hash as long</li>
+ * </ul>
+ *
+ * @author nZeloT
+ */
+public class InputRecorder {
+
+    static final int MAGIC = 0x324E4449;
+    static final int VERSION = 1;
+
+    static final byte RECORD = 1;
+    static final byte END = 2;
+
+    private final DataOutputStream out;
+
+    //the state is serialized first to find out whether it changed
+    private final ByteArrayOutputStream scratch;
+    private final DataOutputStream scratchOut;
+    private byte[] last;
+
+    /** the number of records written */
+    private @Getter int records;
+
+    private boolean closed;
+
+    /**
+     * @param file the file to write the log to
+     */
+    public InputRecorder(@NonNull String file) {
+        this(open(file));
+    }
+
+    /**
+     * @param out the stream to write the log to; it is closed by the recorder
+     */
+    public InputRecorder(@NonNull OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.scratch = new ByteArrayOutputStream(64);
+        this.scratchOut = new DataOutputStream(scratch);
+        this.last = new byte[0];
+
+        try {
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * capture the input of a simulation step. This will be called from within the engine.
+     *
+     * @param tick   the index of the step
+     * @param window the window holding the latched input
+     */
+    void record(long tick, Window window) {
+        if (closed)
+            return;
+
+        try {
+            scratch.reset();
+            window.writeInput(scratchOut);
+
+            byte[] state = scratch.toByteArray();
+            if (!Arrays.equals(state, last)) {
+                out.writeByte(RECORD);
+                out.writeLong(tick);
+                out.writeShort(state.length);
+                out.write(state);
+                last = state;
+                records++;
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * write the end of the session and close the log. This will be called from within the engine.
+     *
+     * @param ticks     the number of steps simulated
+     * @param stateHash the hash of the final state
+     */
+    void finish(long ticks, long stateHash) {
+        if (closed)
+            return;
+
+        try {
+            out.writeByte(END);
+            out.writeLong(ticks);
+            out.writeLong(stateHash);
+            out.close();
+            closed = true;
+
+            Logger.log(InputRecorder.class, "Recorded " + ticks + " ticks with " + records + " input changes", Logger.LEVEL.INFO);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    //a broken log must not take the game down, so recording just stops
+    private void fail(IOException e) {
+        Logger.log(InputRecorder.class, "Could not write the input log; recording stopped. " + e.getMessage(), Logger.LEVEL.ERROR);
+        closed = true;
+
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static OutputStream open(String file) {
+        try {
+            return new FileOutputStream(file);
+        } catch (IOException e) {
+            Logger.log(InputRecorder.class, "Could not open input log: " + file, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Could not open input log: " + file, e);
+        }
+    }
+}
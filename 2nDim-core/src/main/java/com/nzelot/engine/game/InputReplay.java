@@ -0,0 +1,165 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.game;
+
+import com.nzelot.engine.graphics.Window;
+import com.nzelot.engine.utils.FileUtils;
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feeds an input log written by an <code>InputRecorder</code> back into a game. The game runs headless and as fast as
+ * possible, which turns a recorded play session into a reproducible workload.<br>
+ * After the run the final <code>Universe.stateHash()</code> is compared against the recorded one, so changes to the
+ * engine can be checked for changing the outcome of the simulation.
+ *
+ * @author nZeloT
+ */
+public class InputReplay {
+
+    private final long[] ticks;
+    private final byte[][] states;
+
+    /** the number of steps of the recorded session */
+    private final @Getter long recordedTicks;
+
+    /** the state hash the recorded session ended with */
+    private final @Getter long recordedHash;
+
+    /** the state hash the last replay ended with */
+    private @Getter long replayedHash;
+
+    //the next record to apply
+    private int next;
+
+    /**
+     * @param file the file to read the log from
+     */
+    public InputReplay(@NonNull String file) {
+        this(FileUtils.getInputStream(file));
+    }
+
+    /**
+     * @param in the stream to read the log from; it is closed afterwards
+     */
+    public InputReplay(@NonNull InputStream in) {
+        List<Long> ticks = new ArrayList<>();
+        List<byte[]> states = new ArrayList<>();
+        long endTicks = -1;
+        long endHash = 0;
+
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            if (data.readInt() != InputRecorder.MAGIC || data.readInt() != InputRecorder.VERSION)
+                throw new IOException("Not an input log of a supported version");
+
+            while (endTicks < 0) {
+                byte type = data.readByte();
+                if (type == InputRecorder.RECORD) {
+                    ticks.add(data.readLong());
+                    byte[] state = new byte[data.readUnsignedShort()];
+                    data.readFully(state);
+                    states.add(state);
+                } else if (type == InputRecorder.END) {
+                    endTicks = data.readLong();
+                    endHash = data.readLong();
+                } else {
+                    throw new IOException("Unknown record type: " + type);
+                }
+            }
+        } catch (EOFException e) {
+            Logger.log(InputReplay.class, "The input log ended unexpectedly; the session was not finished", Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("The input log ended unexpectedly", e);
+        } catch (IOException e) {
+            Logger.log(InputReplay.class, "Could not read the input log: " + e.getMessage(), Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Could not read the input log", e);
+        }
+
+        this.ticks = new long[ticks.size()];
+        for (int i = 0; i < this.ticks.length; i++)
+            this.ticks[i] = ticks.get(i);
+        this.states = states.toArray(new byte[states.size()][]);
+        this.recordedTicks = endTicks;
+        this.recordedHash = endHash;
+    }
+
+    /**
+     * run the game headless on the calling thread for the recorded number of steps, fed with the recorded input.
+     * The game must not have been started before.
+     *
+     * @param game the game to replay the session with
+     * @return true if the game ended in the recorded state
+     */
+    public boolean run(@NonNull Game game) {
+        next = 0;
+        game.setHeadless(Math.max(1, recordedTicks));
+        game.setInputReplay(this);
+        game.run();
+
+        boolean same = replayedHash == recordedHash;
+        if (same)
+            Logger.log(InputReplay.class, "Replay reached the recorded state after " + recordedTicks + " ticks", Logger.LEVEL.INFO);
+        else
+            Logger.log(InputReplay.class, "Replay diverged from the recorded state after " + recordedTicks + " ticks", Logger.LEVEL.WARNING);
+
+        return same;
+    }
+
+    /**
+     * @return the number of input changes within the log
+     */
+    public int getRecordCount() {
+        return ticks.length;
+    }
+
+    /**
+     * apply the recorded input of a simulation step. This will be called from within the engine.
+     *
+     * @param tick   the index of the step
+     * @param window the window to put the input into
+     */
+    void apply(long tick, Window window) {
+        try {
+            while (next < ticks.length && ticks[next] <= tick) {
+                window.readInput(new DataInputStream(new ByteArrayInputStream(states[next])));
+                next++;
+            }
+        } catch (IOException e) {
+            Logger.log(InputReplay.class, "Corrupt input state at tick " + ticks[next] + ": " + e.getMessage(), Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Corrupt input state at tick " + ticks[next], e);
+        }
+    }
+
+    /**
+     * remember the state the replay ended in. This will be called from within the engine.
+     */
+    void finish(long ticks, long stateHash) {
+        this.replayedHash = stateHash;
+    }
+}
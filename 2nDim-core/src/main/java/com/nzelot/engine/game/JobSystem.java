@@ -0,0 +1,253 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.game;
+
+import com.nzelot.engine.graphics.rendering.EngineContext;
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Runs the per object work of a frame on all cores using a work stealing <code>ForkJoinPool</code>.<br>
+ * Work is split into ranges of at least <code>grain</code> items; idle workers steal the halves other workers did not
+ * get to yet. The universe organizes a tick into phases and reports how long each of them took.
+ *
+ * @author nZeloT
+ */
+public class JobSystem {
+
+    /**
+     * the phases of a simulation tick and of the frame preparation
+     */
+    public enum Phase {
+        /** the physics step; sequential */
+        PHYSICS,
+        /** <code>update()</code> of every object; parallel for objects declaring themselves parallel safe */
+        UPDATE,
+        /** adding and removing the objects requested during the update; sequential */
+        COMMIT,
+        /** rebuilding the transformation matrices of the visible objects; parallel */
+        TRANSFORM
+    }
+
+    private final ForkJoinPool pool;
+
+    /** the minimum number of items handled by a single task */
+    private @Getter int grain;
+
+    private final long[] phaseStart;
+    private final long[] phaseTime;
+
+    public JobSystem() {
+        this(java.lang.Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism the number of worker threads
+     */
+    public JobSystem(int parallelism) {
+        if (parallelism <= 0) {
+            Logger.log(JobSystem.class, "Invalid parallelism: " + parallelism, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+        }
+
+        this.pool = new ForkJoinPool(parallelism);
+        this.grain = 64;
+
+        this.phaseStart = new long[Phase.values().length];
+        this.phaseTime = new long[Phase.values().length];
+    }
+
+    public void setGrain(int grain) {
+        this.grain = Math.max(1, grain);
+    }
+
+    /**
+     * @return the number of worker threads
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * run an action for every item of a range in parallel and wait until all of them are done.
+     * Exceptions thrown by the action are rethrown on the calling thread. The engine context of the calling thread is
+     * bound to the workers while they run the action.
+     *
+     * @param items  the items
+     * @param from   the first index, inclusive
+     * @param to     the last index, exclusive
+     * @param action the action; has to be safe to run concurrently for different items
+     */
+    public <T> void parallelFor(@NonNull T[] items, int from, int to, @NonNull Consumer<? super T> action) {
+        if (to - from <= grain || pool.getParallelism() == 1) {
+            for (int i = from; i < to; i++)
+                action.accept(items[i]);
+            return;
+        }
+
+        pool.invoke(new RangeTask<>(items, from, to, grain, action, EngineContext.find()));
+    }
+
+    /**
+     * split a range of indices into parts of at least <code>grain</code> indices, run an action for every part in
+     * parallel and wait until all of them are done. Meant for walking columns, see <code>EntityStore.run</code>.
+     *
+     * @param from   the first index, inclusive
+     * @param to     the last index, exclusive
+     * @param action the action; has to be safe to run concurrently for different parts
+     */
+    public void parallelRange(int from, int to, @NonNull Range action) {
+        if (to - from <= grain || pool.getParallelism() == 1) {
+            if (from < to)
+                action.run(from, to);
+            return;
+        }
+
+        pool.invoke(new SplitTask(from, to, grain, action, EngineContext.find()));
+    }
+
+    public void begin(@NonNull Phase phase) {
+        phaseStart[phase.ordinal()] = System.nanoTime();
+    }
+
+    public void end(@NonNull Phase phase) {
+        phaseTime[phase.ordinal()] = System.nanoTime() - phaseStart[phase.ordinal()];
+    }
+
+    /**
+     * @return the duration of the last run of the phase in milliseconds
+     */
+    public double getPhaseTime(@NonNull Phase phase) {
+        return phaseTime[phase.ordinal()] / 1000000.0;
+    }
+
+    /**
+     * @return the durations of the last run of every phase
+     */
+    public String describe() {
+        StringBuilder b = new StringBuilder();
+        for (Phase p : Phase.values()) {
+            if (b.length() > 0)
+                b.append(", ");
+            b.append(p.name().toLowerCase()).append(' ').append(String.format("%.2f", getPhaseTime(p))).append(" ms");
+        }
+        return b.toString();
+    }
+
+    /**
+     * stop the worker threads. This will be called from within the engine.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * a part of a range handed to <code>parallelRange</code>
+     */
+    @FunctionalInterface
+    public interface Range {
+        /**
+         * @param from the first index, inclusive
+         * @param to   the last index, exclusive
+         */
+        void run(int from, int to);
+    }
+
+    private static class SplitTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to, grain;
+        private final Range action;
+        private final EngineContext context;
+
+        private SplitTask(int from, int to, int grain, Range action, EngineContext context) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.action = action;
+            this.context = context;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                //the workers are shared by every call, so bind the context of the caller just for this part
+                EngineContext previous = EngineContext.bind(context);
+                try {
+                    action.run(from, to);
+                } finally {
+                    EngineContext.bind(previous);
+                }
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new SplitTask(from, mid, grain, action, context),
+                    new SplitTask(mid, to, grain, action, context));
+        }
+    }
+
+    private static class RangeTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final T[] items;
+        private final int from, to, grain;
+        private final Consumer<? super T> action;
+        private final EngineContext context;
+
+        private RangeTask(T[] items, int from, int to, int grain, Consumer<? super T> action, EngineContext context) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.action = action;
+            this.context = context;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                //the workers are shared by every call, so bind the context of the caller just for this range
+                EngineContext previous = EngineContext.bind(context);
+                try {
+                    for (int i = from; i < to; i++)
+                        action.accept(items[i]);
+                } finally {
+                    EngineContext.bind(previous);
+                }
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask<>(items, from, mid, grain, action, context),
+                    new RangeTask<>(items, mid, to, grain, action, context));
+        }
+    }
+}
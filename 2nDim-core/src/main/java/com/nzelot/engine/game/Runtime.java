@@ -27,6 +27,8 @@ package com.nzelot.engine.game;
 import com.nzelot.engine.utils.logging.Logger;
 import lombok.NonNull;
 
+import java.util.Collection;
+
 /**
  * Start a game and provide a possibility to halt it without every game object having a reference to the game object.
  *
@@ -42,7 +44,8 @@ public class Runtime {
     }
 
     /**
-     * Kick-off a <code>Game</code> in a new <code>Thread</code>
+     * Kick-off a <code>Game</code> in a new <code>Thread</code>. Only a single game can be launched this way as the
+     * window system is global to the process; use <code>runGames</code> for many headless games.
      *
      * @param game the <code>Game</code>-Object to launch
      */
@@ -56,11 +59,25 @@ public class Runtime {
             gameThread.start();
 
         } else {
-            Logger.log(Runtime.class, "Tried to launch second game! This is currently not supported.", Logger.LEVEL.ERROR);
+            Logger.log(Runtime.class, "Tried to launch second game! Use runGames for multiple headless games.", Logger.LEVEL.ERROR);
             throw new IllegalStateException("Game already running!");
         }
     }
 
+    /**
+     * Kick-off a number of headless games on a bounded pool of threads. Each of them owns its own engine context.
+     *
+     * @param games   the headless games to launch
+     * @param threads the maximum number of games running at the same time
+     * @return the pool to supervise the games with; it does not accept further games
+     */
+    public static GamePool runGames(@NonNull Collection<Game> games, int threads) {
+        GamePool pool = new GamePool(threads);
+        games.forEach(pool::submit);
+        pool.shutdown();
+        return pool;
+    }
+
     /**
      * halt the started <code>Game</code>
      */
@@ -0,0 +1,212 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.game;
+
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Runs low priority work, like repacking atlases or rebuilding meshes, in the time left over before the next frame.<br>
+ * A task is split into small slices; every call to <code>Task.step()</code> does one of them. The scheduler keeps
+ * picking the task with the highest priority and only starts a slice if its usual duration still fits before the
+ * deadline. Waiting raises the priority of a task by one level every <code>agingFrames</code> frames, and a task
+ * waiting for more than <code>maxWaitFrames</code> frames gets a slice even if there is no spare time at all.
+ * <p>
+ * The tasks run on the thread owning the GL context, so they may use GL directly.
+ *
+ * @author nZeloT
+ */
+public class TaskScheduler {
+
+    /**
+     * a piece of work which can be done in small slices
+     */
+    public interface Task {
+        /**
+         * do the next slice of the work; it should only take a fraction of a millisecond
+         *
+         * @return true if the task is finished
+         */
+        boolean step();
+    }
+
+    public enum Priority {
+        LOW, NORMAL, HIGH
+    }
+
+    private final Queue<Entry> incoming;
+    private final List<Entry> tasks;
+    private long frame;
+
+    /** the number of frames of waiting which raise the priority of a task by one level */
+    private @Getter int agingFrames;
+
+    /** the number of frames a task may wait before it gets a slice regardless of the spare time */
+    private @Getter int maxWaitFrames;
+
+    //the statistics of the last frame
+    private @Getter double idleAvailable;
+    private @Getter double idleUsed;
+    private @Getter int slicesRun;
+
+    public TaskScheduler() {
+        this.incoming = new ConcurrentLinkedQueue<>();
+        this.tasks = new ArrayList<>();
+        this.agingFrames = 30;
+        this.maxWaitFrames = 120;
+    }
+
+    public void setAgingFrames(int agingFrames) {
+        if (agingFrames <= 0) {
+            Logger.log(TaskScheduler.class, "Invalid number of aging frames: " + agingFrames, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid number of aging frames: " + agingFrames);
+        }
+
+        this.agingFrames = agingFrames;
+    }
+
+    public void setMaxWaitFrames(int maxWaitFrames) {
+        if (maxWaitFrames <= 0) {
+            Logger.log(TaskScheduler.class, "Invalid number of wait frames: " + maxWaitFrames, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid number of wait frames: " + maxWaitFrames);
+        }
+
+        this.maxWaitFrames = maxWaitFrames;
+    }
+
+    /**
+     * queue a task; may be called from any thread
+     *
+     * @param name     the name of the task used in log messages
+     * @param priority the priority of the task
+     * @param task     the task
+     */
+    public void schedule(@NonNull String name, @NonNull Priority priority, @NonNull Task task) {
+        incoming.add(new Entry(name, priority, task));
+    }
+
+    /**
+     * @return the number of unfinished tasks
+     */
+    public int getPending() {
+        return tasks.size() + incoming.size();
+    }
+
+    /**
+     * run task slices until the deadline. This will be called from within the engine once per frame.
+     *
+     * @param deadline the time the next frame is due as <code>System.nanoTime()</code>
+     */
+    public void run(long deadline) {
+        long start = System.nanoTime();
+        frame++;
+
+        Entry e;
+        while ((e = incoming.poll()) != null) {
+            e.lastRun = frame;
+            tasks.add(e);
+        }
+
+        slicesRun = 0;
+
+        //starving tasks get their slice first
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            Entry t = tasks.get(i);
+            if (frame - t.lastRun > maxWaitFrames)
+                step(t);
+        }
+
+        while (!tasks.isEmpty()) {
+            Entry best = null;
+            long bestScore = Long.MIN_VALUE;
+            for (Entry t : tasks) {
+                long score = t.priority.ordinal() + (frame - t.lastRun) / agingFrames;
+                if (score > bestScore) {
+                    best = t;
+                    bestScore = score;
+                }
+            }
+
+            if (System.nanoTime() + best.sliceTime > deadline)
+                break;
+
+            step(best);
+        }
+
+        long end = System.nanoTime();
+        idleAvailable = Math.max(0, deadline - start) / 1000000.0;
+        idleUsed = (end - start) / 1000000.0;
+    }
+
+    /**
+     * @return a short summary of the last frame
+     */
+    public String describe() {
+        return String.format("tasks: %d pending, %d slices, %.2f of %.2f ms idle used",
+                getPending(), slicesRun, idleUsed, idleAvailable);
+    }
+
+    private void step(Entry t) {
+        long start = System.nanoTime();
+        boolean done;
+
+        try {
+            done = t.task.step();
+        } catch (RuntimeException ex) {
+            Logger.log(TaskScheduler.class, "Task " + t.name + " failed and was dropped: " + ex, Logger.LEVEL.ERROR);
+            done = true;
+        }
+
+        //a moving average of the slice durations decides whether the next slice still fits
+        long time = System.nanoTime() - start;
+        t.sliceTime = t.sliceTime == 0 ? time : (t.sliceTime * 7 + time) / 8;
+        t.lastRun = frame;
+        slicesRun++;
+
+        if (done)
+            tasks.remove(t);
+    }
+
+    private static class Entry {
+        private final String name;
+        private final Priority priority;
+        private final Task task;
+
+        private long lastRun;
+        private long sliceTime;
+
+        private Entry(String name, Priority priority, Task task) {
+            this.name = name;
+            this.priority = priority;
+            this.task = task;
+        }
+    }
+}
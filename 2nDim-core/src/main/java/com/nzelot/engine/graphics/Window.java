@@ -30,7 +30,11 @@ import org.joml.Vector2f;
 import org.lwjgl.glfw.*;
 import org.lwjgl.opengl.GLContext;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL11.*;
@@ -56,15 +60,30 @@ public class Window {
     private long windowID;
     private boolean fullscreen;
 
+    //the raw input; written by the GLFW callbacks, possibly while the simulation thread latches it
+    private final Object inputLock = new Object();
     private boolean keys[];
+    private boolean mouseBtn[];
+    private Vector2f cursor;
+
+    //the input latched for the simulation; read by the accessors, recorded and replayed
     private boolean keyState[];
     private boolean keyTyped[];
-    private boolean mouseBtn[];
     private boolean mouseState[];
     private boolean mouseClicked[];
 
+    /** the cursor position at the last latch */
     private @Getter Vector2f mousePosition;
 
+    /** whether the last latch changed any key, button or the cursor position */
+    private @Getter boolean inputChanged;
+
+    //the replayed input; latched instead of the raw input once the first state was read
+    private boolean replaying;
+    private boolean replayKeys[];
+    private boolean replayBtn[];
+    private Vector2f replayCursor;
+
     private GLFWFramebufferSizeCallback windowResize;
     private GLFWKeyCallback keyCallback;
     private GLFWMouseButtonCallback mouseButtonCallback;
@@ -85,7 +104,12 @@ public class Window {
         this.mouseClicked = new boolean[BTN_COUNT];
         this.mouseState = new boolean[BTN_COUNT];
 
+        this.cursor = new Vector2f();
         this.mousePosition = new Vector2f();
+
+        this.replayKeys = new boolean[KEY_COUNT];
+        this.replayBtn = new boolean[BTN_COUNT];
+        this.replayCursor = new Vector2f();
     }
 
     public boolean init() {
@@ -158,22 +182,28 @@ public class Window {
         keyCallback = new GLFWKeyCallback() {
             @Override
             public void invoke(long window, int key, int scancode, int action, int mods) {
-                keys[key] = action != GLFW_RELEASE;
+                synchronized (inputLock) {
+                    keys[key] = action != GLFW_RELEASE;
+                }
             }
         };
 
         mouseButtonCallback = new GLFWMouseButtonCallback() {
             @Override
             public void invoke(long window, int button, int action, int mods) {
-                mouseBtn[button] = action != GLFW_RELEASE;
+                synchronized (inputLock) {
+                    mouseBtn[button] = action != GLFW_RELEASE;
+                }
             }
         };
 
         cursorPosCallback = new GLFWCursorPosCallback() {
             @Override
             public void invoke(long window, double xpos, double ypos) {
-                mousePosition.x = (float) xpos;
-                mousePosition.y = (float) ypos;
+                synchronized (inputLock) {
+                    cursor.x = (float) xpos;
+                    cursor.y = (float) ypos;
+                }
             }
         };
 
@@ -196,17 +226,117 @@ public class Window {
         glfwSwapBuffers(this.windowID);
     }
 
+    /**
+     * set the number of screen refreshes to wait for before swapping the buffers; -1 for adaptive vsync.
+     * Has to be called from the thread owning the context.
+     */
+    public void setSwapInterval(int interval) {
+        glfwSwapInterval(interval);
+    }
+
+    /**
+     * @param extension the name of a OpenGL, WGL or GLX extension
+     * @return true if the current context supports the extension
+     */
+    public boolean isExtensionSupported(String extension) {
+        return glfwExtensionSupported(extension) == GL_TRUE;
+    }
+
     public void updateInput() {
+        pollEvents();
+        latchInput();
+    }
+
+    /**
+     * let GLFW process the pending events; this has to happen on the thread which created the window
+     */
+    public void pollEvents() {
         glfwPollEvents();
+    }
 
+    /**
+     * copy the input of the events processed since the last call into the latched state read by the simulation and
+     * derive the typed and clicked states. May be called from another thread than the one polling the events.
+     * Once a state was read through <code>readInput(DataInput)</code> that state is latched instead.
+     */
+    public void latchInput() {
+        if (replaying) {
+            latch(replayKeys, replayBtn, replayCursor.x, replayCursor.y);
+            return;
+        }
+
+        synchronized (inputLock) {
+            latch(keys, mouseBtn, cursor.x, cursor.y);
+        }
+    }
+
+    private void latch(boolean[] pressedKeys, boolean[] pressedButtons, float x, float y) {
+        inputChanged = !Arrays.equals(pressedKeys, keyState) || !Arrays.equals(pressedButtons, mouseState)
+                || mousePosition.x != x || mousePosition.y != y;
+
+        for (int i = 0; i < KEY_COUNT; i++)
+            keyTyped[i] = pressedKeys[i] && !keyState[i];
+
+        for (int i = 0; i < BTN_COUNT; i++)
+            mouseClicked[i] = pressedButtons[i] && !mouseState[i];
+
+        System.arraycopy(pressedKeys, 0, keyState, 0, KEY_COUNT);
+        System.arraycopy(pressedButtons, 0, mouseState, 0, BTN_COUNT);
+        mousePosition.set(x, y);
+    }
+
+    /**
+     * write the latched input state: the pressed keys, the pressed mouse buttons and the cursor position
+     *
+     * @param out the output to write to
+     * @throws IOException if the output could not be written
+     */
+    public void writeInput(DataOutput out) throws IOException {
+        int pressed = 0;
         for (int i = 0; i < KEY_COUNT; i++)
-            keyTyped[i] = keys[i] && !keyState[i];
+            if (keyState[i])
+                pressed++;
+
+        //only a few keys are held at once so the codes are stored instead of the whole array
+        out.writeShort(pressed);
+        for (int i = 0; i < KEY_COUNT; i++)
+            if (keyState[i])
+                out.writeShort(i);
+
+        int buttons = 0;
+        for (int i = 0; i < BTN_COUNT; i++)
+            if (mouseState[i])
+                buttons |= 1 << i;
+        out.writeInt(buttons);
+
+        out.writeFloat(mousePosition.x);
+        out.writeFloat(mousePosition.y);
+    }
+
+    /**
+     * replace the input of the window by one written through <code>writeInput(DataOutput)</code>.
+     * Call <code>latchInput()</code> afterwards to derive the typed and clicked states.
+     *
+     * @param in the input to read from
+     * @throws IOException if the input could not be read
+     */
+    public void readInput(DataInput in) throws IOException {
+        Arrays.fill(replayKeys, false);
+        int pressed = in.readShort();
+        for (int i = 0; i < pressed; i++) {
+            int key = in.readShort();
+            if (key < 0 || key >= KEY_COUNT)
+                throw new IOException("Invalid key code: " + key);
+            replayKeys[key] = true;
+        }
 
+        int buttons = in.readInt();
         for (int i = 0; i < BTN_COUNT; i++)
-            mouseClicked[i] = mouseBtn[i] && !mouseState[i];
+            replayBtn[i] = (buttons & (1 << i)) != 0;
 
-        System.arraycopy(keys, 0, keyState, 0, KEY_COUNT);
-        System.arraycopy(mouseBtn, 0, mouseState, 0, BTN_COUNT);
+        replayCursor.x = in.readFloat();
+        replayCursor.y = in.readFloat();
+        replaying = true;
     }
 
     public boolean closed() {
@@ -219,7 +349,7 @@ public class Window {
             return false;
         }
 
-        return keys[keycode];
+        return keyState[keycode];
     }
 
     public boolean isKeyTyped(int keycode) {
@@ -237,7 +367,7 @@ public class Window {
             return false;
         }
 
-        return mouseBtn[btn];
+        return mouseState[btn];
     }
 
     public boolean isMouseButtonClicked(int btn) {
@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import com.nzelot.engine.utils.FileUtils;
+import com.nzelot.engine.utils.ResourceUtils;
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loaded shader sources shared by all the games of the JVM.<br>
+ * They are immutable, so every <code>EngineContext</code> builds its shaders from the same data instead of
+ * reading the files again. Images are decoded on every call and not cached: their pixels are only needed until the
+ * upload and would otherwise keep large direct buffers alive for the lifetime of the JVM.
+ *
+ * @author nZeloT
+ */
+public final class AssetCache {
+
+    private static final Map<String, String> sources = new ConcurrentHashMap<>();
+
+    //prevent instantiation
+    private AssetCache() {
+    }
+
+    /**
+     * @param resourceName the path relative to the class path
+     * @return the content of the resource
+     */
+    public static String resourceSource(@NonNull String resourceName) {
+        return sources.computeIfAbsent("res:" + resourceName, k -> ResourceUtils.loadAsString(resourceName));
+    }
+
+    /**
+     * @param file the path relative to the working dir
+     * @return the content of the file
+     */
+    public static String fileSource(@NonNull String file) {
+        return sources.computeIfAbsent("file:" + file, k -> FileUtils.loadAsString(file));
+    }
+
+    /**
+     * @param resourceName the path of a PNG image relative to the class path
+     * @return the decoded image; not cached
+     */
+    public static TextureData resourceImage(@NonNull String resourceName) {
+        return decode(resourceName, ResourceUtils.getResourceStream(resourceName));
+    }
+
+    /**
+     * @param file the path of a PNG image relative to the working dir
+     * @return the decoded image; not cached
+     */
+    public static TextureData fileImage(@NonNull String file) {
+        return decode(file, FileUtils.getInputStream(file));
+    }
+
+    /**
+     * forget all the cached assets, e.g. after the files changed
+     */
+    public static void clear() {
+        sources.clear();
+    }
+
+    private static TextureData decode(String name, InputStream in) {
+        try (InputStream stream = in) {
+            return TextureData.decode(stream);
+        } catch (IOException e) {
+            Logger.log(AssetCache.class, "Could not decode image: " + name + "; " + e.getMessage(), Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Could not decode image: " + name, e);
+        }
+    }
+}
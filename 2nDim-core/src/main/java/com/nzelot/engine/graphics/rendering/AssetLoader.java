@@ -0,0 +1,243 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import com.nzelot.engine.utils.FileUtils;
+import com.nzelot.engine.utils.ResourceUtils;
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Loads textures in the background so loading a level does not stall the frames.<br>
+ * Reading the files happens on a small I/O pool, PNG decoding on a decode pool sized to the cores left over by the
+ * game thread. The decoded pixels are uploaded through the <code>GLCommandQueue</code> and so share its per frame
+ * budget. Until then the texture shows <code>TextureManager.STANDARD.NOT_FOUND</code>.
+ * <p>
+ * The counters cover everything requested since the last <code>resetProgress()</code> and can drive a loading screen.
+ *
+ * @author nZeloT
+ */
+public class AssetLoader {
+
+    private static final int IO_THREADS = 2;
+
+    private final TextureManager textures;
+    private final GLCommandQueue commands;
+
+    //created on the first request
+    private ExecutorService io;
+    private ExecutorService decode;
+
+    //the counters only change together under this lock, so a reset never mixes old and new counts
+    private final Object progress = new Object();
+    private int requested;
+    private int completed;
+    private int failed;
+
+    AssetLoader(TextureManager textures, GLCommandQueue commands) {
+        this.textures = textures;
+        this.commands = commands;
+    }
+
+    /**
+     * @return the instance of the engine context bound to the calling thread
+     */
+    public static AssetLoader current() {
+        return EngineContext.current().getAssetLoader();
+    }
+
+    /**
+     * load a texture from a file in the background
+     *
+     * @param key  the key of the texture
+     * @param file the PNG image relative to the working dir
+     * @return the texture; shows the placeholder until <code>Texture.isLoading()</code> turns false. <code>null</code> if headless
+     */
+    public Texture loadTexture(@NonNull String key, @NonNull String file) {
+        return load(key, file, () -> FileUtils.getInputStream(file));
+    }
+
+    /**
+     * load a texture from the class path in the background
+     *
+     * @param key          the key of the texture
+     * @param resourceName the PNG image relative to the class path
+     * @return the texture; shows the placeholder until <code>Texture.isLoading()</code> turns false. <code>null</code> if headless
+     */
+    public Texture loadTextureResource(@NonNull String key, @NonNull String resourceName) {
+        return load(key, resourceName, () -> ResourceUtils.getResourceStream(resourceName));
+    }
+
+    /**
+     * @return the number of textures requested since the last reset
+     */
+    public int getRequested() {
+        synchronized (progress) {
+            return requested;
+        }
+    }
+
+    /**
+     * @return the number of textures uploaded since the last reset
+     */
+    public int getCompleted() {
+        synchronized (progress) {
+            return completed;
+        }
+    }
+
+    /**
+     * @return the number of textures which could not be loaded since the last reset; they keep the placeholder
+     */
+    public int getFailed() {
+        synchronized (progress) {
+            return failed;
+        }
+    }
+
+    /**
+     * @return the share of the requested textures done, either loaded or failed; 1 if nothing was requested
+     */
+    public float getProgress() {
+        synchronized (progress) {
+            return requested == 0 ? 1 : (completed + failed) / (float) requested;
+        }
+    }
+
+    /**
+     * @return true if every requested texture is done
+     */
+    public boolean isDone() {
+        synchronized (progress) {
+            return completed + failed >= requested;
+        }
+    }
+
+    /**
+     * start counting anew, e.g. for the next loading screen. Textures still loading are counted as requested again.
+     */
+    public void resetProgress() {
+        synchronized (progress) {
+            requested = Math.max(0, requested - completed - failed);
+            completed = 0;
+            failed = 0;
+        }
+    }
+
+    /**
+     * stop the loading threads. This will be called from within the engine.
+     */
+    synchronized void exit() {
+        if (io != null) {
+            io.shutdownNow();
+            decode.shutdownNow();
+            io = null;
+            decode = null;
+        }
+    }
+
+    private Texture load(String key, String name, Supplier<InputStream> source) {
+        Texture handle = textures.createPlaceholder(key);
+        if (handle == null)
+            return null;
+
+        synchronized (progress) {
+            requested++;
+        }
+        startPools();
+
+        CompletableFuture
+                .supplyAsync(() -> read(name, source), io)
+                .thenApplyAsync(bytes -> decode(name, bytes), decode)
+                .thenCompose(data -> commands.submit(() -> {
+                    handle.replace(data);
+                    return handle;
+                }))
+                .whenComplete((t, e) -> {
+                    synchronized (progress) {
+                        if (e == null)
+                            completed++;
+                        else
+                            failed++;
+                    }
+                    if (e != null) {
+                        Logger.log(AssetLoader.class, "Could not load texture " + key + ": " + e.getMessage(), Logger.LEVEL.ERROR);
+                    }
+                });
+
+        return handle;
+    }
+
+    private synchronized void startPools() {
+        if (io == null) {
+            int cores = java.lang.Runtime.getRuntime().availableProcessors();
+            io = Executors.newFixedThreadPool(IO_THREADS, daemon("2nDim-io-"));
+            decode = Executors.newFixedThreadPool(Math.max(1, cores - 1), daemon("2nDim-decode-"));
+        }
+    }
+
+    private static byte[] read(String name, Supplier<InputStream> source) {
+        try (InputStream in = source.get()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(in.available() > 0 ? in.available() : 8192);
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) >= 0)
+                out.write(buffer, 0, n);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not read " + name, e);
+        }
+    }
+
+    private static TextureData decode(String name, byte[] bytes) {
+        try {
+            return TextureData.decode(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not decode " + name, e);
+        }
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + count.getAndIncrement());
+            //loading must not keep the JVM alive
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
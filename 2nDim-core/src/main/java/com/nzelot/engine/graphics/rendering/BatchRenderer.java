@@ -0,0 +1,267 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import com.nzelot.engine.utils.BufferUtils;
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.*;
+
+/**
+ * Collects world space quads into one streaming vertex buffer and draws them with as few draw calls as possible.<br>
+ * A new draw call is only issued if the texture changes, the buffer is full or <code>flush()</code> is called explicitly.
+ * Textures packed onto the same atlas page count as one texture.
+ * Colored quads and circles do not use a texture and therefore never break a run.
+ * The vertices are written straight into a <code>DynamicVertexBuffer</code>.
+ *
+ * @author nZeloT
+ */
+public class BatchRenderer implements QuadRenderer {
+
+    /**
+     * @return the instance of the engine context bound to the calling thread
+     */
+    public static BatchRenderer current() {
+        return EngineContext.current().getBatchRenderer();
+    }
+
+    /** the maximum number of quads in one draw call; 4 vertices each need to be addressable by an unsigned short */
+    public static final int MAX_QUADS = 2048;
+
+    //x, y, u, v, r, g, b, a, mode
+    private static final int VERTEX_SIZE = 9;
+
+    //the number of full runs a frame can hold before the buffer moves on to the next region
+    private static final int RUNS_PER_FRAME = 4;
+
+    //the different ways the fragment shader colors a quad
+    private static final float MODE_COLOR   = 0;
+    private static final float MODE_TEXTURE = 1;
+    private static final float MODE_CIRCLE  = 2;
+
+    private static final Vector4f WHITE = new Vector4f(1, 1, 1, 1);
+
+    private int vao, ibo;
+    private DynamicVertexBuffer vertices;
+    private Shader shader;
+    private Uniform texUniform;
+
+    private Texture texture;
+    private int quadCount;
+    //the number of quads reserved for the current run
+    private int runCapacity;
+
+    private boolean init;
+    private boolean drawing;
+
+    private @Getter int drawCalls;
+    private @Getter int quadsDrawn;
+
+    //created by the EngineContext
+    BatchRenderer() {
+    }
+
+    /**
+     * create the buffers and fetch the batch shader. This will be called from within the engine.
+     */
+    public void init() {
+        if (!init) {
+            shader = ShaderManager.current().get(ShaderManager.STANDARD.BATCH);
+            texUniform = shader.uniform("tex");
+            vertices = new DynamicVertexBuffer(VERTEX_SIZE << 2, MAX_QUADS * 4 * RUNS_PER_FRAME);
+
+            vao = glGenVertexArrays();
+            glBindVertexArray(vao);
+
+            vertices.bind();
+
+            int stride = VERTEX_SIZE << 2;
+            glVertexAttribPointer(Shader.VERTEX_ATTRIB, 2, GL_FLOAT, false, stride, 0);
+            glEnableVertexAttribArray(Shader.VERTEX_ATTRIB);
+            glVertexAttribPointer(Shader.TCOORD_ATTRIB, 2, GL_FLOAT, false, stride, 2 << 2);
+            glEnableVertexAttribArray(Shader.TCOORD_ATTRIB);
+            glVertexAttribPointer(Shader.COLOR_ATTRIB, 4, GL_FLOAT, false, stride, 4 << 2);
+            glEnableVertexAttribArray(Shader.COLOR_ATTRIB);
+            glVertexAttribPointer(Shader.MODE_ATTRIB, 1, GL_FLOAT, false, stride, 8 << 2);
+            glEnableVertexAttribArray(Shader.MODE_ATTRIB);
+
+            ibo = glGenBuffers();
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo);
+            glBufferData(GL_ELEMENT_ARRAY_BUFFER, BufferUtils.createShortBuffer(generateIndices()), GL_STATIC_DRAW);
+
+            glBindVertexArray(0);
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+            init = true;
+        }
+    }
+
+    /**
+     * free all the GL resources. This will be called from within the engine.
+     */
+    public void exit() {
+        if (init) {
+            glBindVertexArray(0);
+            glDeleteVertexArrays(vao);
+            glDeleteBuffers(ibo);
+            vertices.delete();
+
+            vertices = null;
+            shader = null;
+            texUniform = null;
+            texture = null;
+
+            init = false;
+        }
+    }
+
+    @Override
+    public void begin() {
+        if (drawing) {
+            Logger.log(BatchRenderer.class, "Called begin() without calling end() first!", Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Called begin() without calling end() first!");
+        }
+
+        texUniform.set(1);
+        vertices.nextFrame();
+
+        drawCalls = 0;
+        quadsDrawn = 0;
+        texture = null;
+        drawing = true;
+    }
+
+    @Override
+    public void drawQuad(@NonNull Matrix4f transformation, @NonNull Vector4f color) {
+        prepare(null);
+        quad(transformation, 0, 0, 1, 1, color, MODE_COLOR);
+    }
+
+    @Override
+    public void drawQuad(@NonNull Matrix4f transformation, @NonNull Texture tex, float u0, float v0, float u1, float v1) {
+        prepare(tex);
+        quad(transformation, u0, v0, u1, v1, WHITE, MODE_TEXTURE);
+    }
+
+    @Override
+    public void drawCircle(@NonNull Matrix4f transformation, @NonNull Vector4f color) {
+        prepare(null);
+        quad(transformation, 0, 0, 1, 1, color, MODE_CIRCLE);
+    }
+
+    @Override
+    public void flush() {
+        if (quadCount == 0)
+            return;
+
+        vertices.end();
+
+        shader.bind();
+        if (texture != null)
+            texture.bind();
+
+        //the indices always start at 0, the base vertex moves them to the run inside the ring buffer
+        glBindVertexArray(vao);
+        glDrawElementsBaseVertex(GL_TRIANGLES, quadCount * 6, GL_UNSIGNED_SHORT, 0, vertices.getFirst());
+        glBindVertexArray(0);
+
+        drawCalls++;
+        quadsDrawn += quadCount;
+
+        quadCount = 0;
+    }
+
+    @Override
+    public void end() {
+        if (!drawing) {
+            Logger.log(BatchRenderer.class, "Called end() without calling begin() first!", Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Called end() without calling begin() first!");
+        }
+
+        flush();
+        drawing = false;
+    }
+
+    //flush if the quad does not fit into the current run
+    private void prepare(Texture tex) {
+        if (!drawing) {
+            Logger.log(BatchRenderer.class, "Tried to draw without calling begin() first!", Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Tried to draw without calling begin() first!");
+        }
+
+        if (quadCount == runCapacity || (tex != null && texture != null && tex.getID() != texture.getID()))
+            flush();
+
+        if (tex != null)
+            texture = tex;
+
+        if (quadCount == 0) {
+            //only reserve what is left of the region; a full region splits the run instead of moving on to the next
+            //region, which may still be read by the GPU
+            int remaining = vertices.getRemaining() >> 2;
+            runCapacity = remaining > 0 ? Math.min(MAX_QUADS, remaining) : MAX_QUADS;
+            vertices.begin(runCapacity * 4);
+        }
+    }
+
+    //the corners have the same layout as VertexArrayManager.STANDARD.SQUARE
+    private void quad(Matrix4f m, float u0, float v0, float u1, float v1, Vector4f c, float mode) {
+        vertex(m, -0.5f, -0.5f, u0, v0, c, mode);
+        vertex(m,  0.5f, -0.5f, u1, v0, c, mode);
+        vertex(m,  0.5f,  0.5f, u1, v1, c, mode);
+        vertex(m, -0.5f,  0.5f, u0, v1, c, mode);
+        quadCount++;
+    }
+
+    private void vertex(Matrix4f m, float x, float y, float u, float v, Vector4f c, float mode) {
+        vertices.put(m.m00 * x + m.m10 * y + m.m30, m.m01 * x + m.m11 * y + m.m31)
+                .put(u, v)
+                .put(c.x, c.y, c.z, c.w)
+                .put(mode);
+    }
+
+    private static short[] generateIndices() {
+        short[] indices = new short[MAX_QUADS * 6];
+        for (int i = 0; i < MAX_QUADS; i++) {
+            int o = i * 4;
+            indices[i * 6 + 0] = (short) (o + 3);
+            indices[i * 6 + 1] = (short) (o + 2);
+            indices[i * 6 + 2] = (short) (o + 1);
+            indices[i * 6 + 3] = (short) (o + 1);
+            indices[i * 6 + 4] = (short) (o + 0);
+            indices[i * 6 + 5] = (short) (o + 3);
+        }
+        return indices;
+    }
+}
@@ -24,6 +24,7 @@
 
 package com.nzelot.engine.graphics.rendering;
 
+import com.nzelot.engine.utils.BufferUtils;
 import lombok.Getter;
 import org.joml.Matrix4d;
 import org.joml.Vector4d;
@@ -34,7 +35,7 @@ import org.joml.Vector4d;
 public class CircleGenerator {
 
     private @Getter final float[] verts;
-    private @Getter final byte[] inds;
+    private @Getter final int[] inds;
     private @Getter final float[] tcs;
 
     public CircleGenerator(int num){
@@ -44,7 +45,9 @@ public class CircleGenerator {
     }
 
     public VertexArray createVertexArray(){
-        return new VertexArray(verts, inds, tcs);
+        return new VertexArray(VertexFormat.POSITION_TEXCOORD,
+                VertexFormat.POSITION_TEXCOORD.pack(verts, tcs),
+                BufferUtils.createIndexBuffer(inds, verts.length / 3));
     }
 
     static float[] vertGen(int num) {
@@ -71,16 +74,16 @@ public class CircleGenerator {
         return verts;
     }
 
-    static byte[] indGen(int num) {
-        byte[] inds = new byte[num * 3];
+    static int[] indGen(int num) {
+        int[] inds = new int[num * 3];
         for (int i = 0; i < num; i++) {
             inds[i * 3 + 0] = 0;
-            inds[i * 3 + 1] = (byte) (i + 1);
-            inds[i * 3 + 2] = (byte) ((i + 2) % num);
+            inds[i * 3 + 1] = i + 1;
+            inds[i * 3 + 2] = (i + 2) % num;
 
             //ugly but works -.-
             if (i + 2 == num)
-                inds[i * 3 + 2] = (byte) num;
+                inds[i * 3 + 2] = num;
         }
 
         return inds;
@@ -0,0 +1,308 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.*;
+
+/**
+ * A vertex buffer for geometry which is rebuilt every frame, e.g. batches, particles or debug lines.<br>
+ * The buffer is split into a ring of <code>regionCount</code> regions. Every frame writes into its own region while
+ * the GPU may still read the regions of the previous frames, so the CPU does not have to wait for the GPU.
+ * <p>
+ * In <code>MAP_UNSYNCHRONIZED</code> mode the vertices are written straight into memory mapped with
+ * <code>glMapBufferRange</code> and a fence guards every region until the GPU is done with it.
+ * <code>ORPHAN</code> mode writes into a staging buffer and lets the driver orphan the storage whenever the ring wraps.
+ * <p>
+ * Usage: <code>nextFrame()</code> once per frame, then any number of <code>begin(n)</code>, <code>put(...)</code>,
+ * <code>end()</code> sequences. Draw the written vertices starting at <code>getFirst()</code>.
+ *
+ * @author nZeloT
+ */
+public class DynamicVertexBuffer {
+
+    public enum Mode {
+        MAP_UNSYNCHRONIZED, ORPHAN
+    }
+
+    //how long to wait for a fence in one go; 1 ms
+    private static final long WAIT_TIMEOUT = 1000000L;
+
+    private @Getter Mode mode;
+
+    /** the size of a single vertex in bytes */
+    private final @Getter int vertexSize;
+    private final @Getter int regionVertices;
+    private final @Getter int regionCount;
+
+    private int vbo;
+    private final long[] fences;
+    private ByteBuffer staging;
+
+    private ByteBuffer target;
+    private long targetOffset;
+
+    private int region;
+    private int cursor;
+    private @Getter int first;
+
+    private boolean writing;
+    private boolean enabled;
+
+    /** how often the CPU had to wait for the GPU to release a region */
+    private @Getter int stalls;
+
+    public DynamicVertexBuffer(int vertexSize, int regionVertices) {
+        this(vertexSize, regionVertices, 3, Mode.MAP_UNSYNCHRONIZED);
+    }
+
+    /**
+     * @param vertexSize     the size of a single vertex in bytes
+     * @param regionVertices the number of vertices a single frame may use
+     * @param regionCount    the number of frames which may be in flight at the same time
+     * @param mode           how to avoid synchronisation with the GPU
+     */
+    public DynamicVertexBuffer(int vertexSize, int regionVertices, int regionCount, @NonNull Mode mode) {
+        if (vertexSize <= 0 || regionVertices <= 0 || regionCount <= 0) {
+            Logger.log(DynamicVertexBuffer.class, "Invalid buffer dimensions: " + vertexSize + " bytes, " + regionVertices + " vertices, " + regionCount + " regions", Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid buffer dimensions: " + vertexSize + " bytes, " + regionVertices + " vertices, " + regionCount + " regions");
+        }
+
+        this.mode = mode;
+        this.vertexSize = vertexSize;
+        this.regionVertices = regionVertices;
+        this.regionCount = regionCount;
+        this.fences = new long[regionCount];
+
+        vbo = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glBufferData(GL_ARRAY_BUFFER, getCapacity(), GL_STREAM_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        enabled = true;
+    }
+
+    /**
+     * bind the buffer to <code>GL_ARRAY_BUFFER</code>, e.g. to set up the attribute pointers
+     */
+    public void bind() {
+        if (enabled)
+            glBindBuffer(GL_ARRAY_BUFFER, vbo);
+    }
+
+    /**
+     * start a new frame. The region used so far is fenced and the next one is acquired.
+     */
+    public void nextFrame() {
+        if (enabled && cursor > 0)
+            advance();
+    }
+
+    /**
+     * start writing vertices. If the current region can not hold <code>maxVertices</code> more vertices
+     * the next region is used.
+     *
+     * @param maxVertices the maximum number of vertices written before <code>end()</code>
+     * @return this buffer to write the vertices
+     */
+    public DynamicVertexBuffer begin(int maxVertices) {
+        if (writing) {
+            Logger.log(DynamicVertexBuffer.class, "Called begin() without calling end() first!", Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Called begin() without calling end() first!");
+        }
+
+        if (maxVertices > regionVertices) {
+            Logger.log(DynamicVertexBuffer.class, "Tried to write " + maxVertices + " vertices into a region of " + regionVertices, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to write " + maxVertices + " vertices into a region of " + regionVertices);
+        }
+
+        if (cursor + maxVertices > regionVertices)
+            advance();
+
+        first = region * regionVertices + cursor;
+        targetOffset = (long) first * vertexSize;
+        int length = maxVertices * vertexSize;
+
+        if (mode == Mode.MAP_UNSYNCHRONIZED) {
+            glBindBuffer(GL_ARRAY_BUFFER, vbo);
+            target = glMapBufferRange(GL_ARRAY_BUFFER, targetOffset, length,
+                    GL_MAP_WRITE_BIT | GL_MAP_UNSYNCHRONIZED_BIT | GL_MAP_INVALIDATE_RANGE_BIT);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+            if (target == null) {
+                Logger.log(DynamicVertexBuffer.class, "glMapBufferRange failed; falling back to orphaning", Logger.LEVEL.WARNING);
+                mode = Mode.ORPHAN;
+            } else {
+                target.order(ByteOrder.nativeOrder());
+            }
+        }
+
+        if (mode == Mode.ORPHAN) {
+            if (staging == null)
+                staging = ByteBuffer.allocateDirect(regionVertices * vertexSize).order(ByteOrder.nativeOrder());
+
+            staging.clear();
+            staging.limit(length);
+            target = staging;
+        }
+
+        writing = true;
+        return this;
+    }
+
+    public DynamicVertexBuffer put(float f) {
+        target.putFloat(f);
+        return this;
+    }
+
+    public DynamicVertexBuffer put(float x, float y) {
+        target.putFloat(x).putFloat(y);
+        return this;
+    }
+
+    public DynamicVertexBuffer put(float x, float y, float z, float w) {
+        target.putFloat(x).putFloat(y).putFloat(z).putFloat(w);
+        return this;
+    }
+
+    public DynamicVertexBuffer put(byte b) {
+        target.put(b);
+        return this;
+    }
+
+    /**
+     * @param data the floats from <code>position()</code> to <code>limit()</code>; the position is moved to the limit
+     */
+    public DynamicVertexBuffer put(@NonNull FloatBuffer data) {
+        int n = data.remaining();
+        target.asFloatBuffer().put(data);
+        target.position(target.position() + (n << 2));
+        return this;
+    }
+
+    /**
+     * finish writing and hand the vertices to OpenGL
+     *
+     * @return the number of complete vertices written since <code>begin()</code>
+     */
+    public int end() {
+        if (!writing) {
+            Logger.log(DynamicVertexBuffer.class, "Called end() without calling begin() first!", Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Called end() without calling begin() first!");
+        }
+
+        int written = target.position() / vertexSize;
+
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        if (mode == Mode.MAP_UNSYNCHRONIZED) {
+            if (!glUnmapBuffer(GL_ARRAY_BUFFER))
+                Logger.log(DynamicVertexBuffer.class, "Mapped vertex data got corrupted", Logger.LEVEL.WARNING);
+        } else {
+            staging.flip();
+            glBufferSubData(GL_ARRAY_BUFFER, targetOffset, staging);
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        cursor += written;
+        target = null;
+        writing = false;
+
+        return written;
+    }
+
+    /**
+     * @return the number of vertices the current region can still take without moving on to the next region
+     */
+    public int getRemaining() {
+        return regionVertices - cursor;
+    }
+
+    /**
+     * @return the size of the whole buffer in bytes
+     */
+    public long getCapacity() {
+        return (long) regionVertices * vertexSize * regionCount;
+    }
+
+    public void delete() {
+        if (enabled) {
+            enabled = false;
+
+            for (int i = 0; i < fences.length; i++) {
+                if (fences[i] != 0) {
+                    glDeleteSync(fences[i]);
+                    fences[i] = 0;
+                }
+            }
+
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+            glDeleteBuffers(vbo);
+            staging = null;
+        }
+    }
+
+    private void advance() {
+        if (mode == Mode.MAP_UNSYNCHRONIZED)
+            fences[region] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+
+        region = (region + 1) % regionCount;
+        cursor = 0;
+
+        if (fences[region] != 0) {
+            await(fences[region]);
+            glDeleteSync(fences[region]);
+            fences[region] = 0;
+        }
+
+        if (mode == Mode.ORPHAN && region == 0) {
+            //the ring wrapped; let the driver hand out fresh storage instead of waiting for the old one
+            glBindBuffer(GL_ARRAY_BUFFER, vbo);
+            glBufferData(GL_ARRAY_BUFFER, getCapacity(), GL_STREAM_DRAW);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+        }
+    }
+
+    private void await(long fence) {
+        int result = glClientWaitSync(fence, 0, 0);
+        if (result == GL_ALREADY_SIGNALED || result == GL_CONDITION_SATISFIED)
+            return;
+
+        stalls++;
+        while (result == GL_TIMEOUT_EXPIRED)
+            result = glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, WAIT_TIMEOUT);
+
+        if (result == GL_WAIT_FAILED)
+            Logger.log(DynamicVertexBuffer.class, "Waiting for a region fence failed", Logger.LEVEL.WARNING);
+    }
+}
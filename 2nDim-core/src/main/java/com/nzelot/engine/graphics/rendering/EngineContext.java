@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+
+/**
+ * Everything a single game needs to render: the managers, the matrix block and the renderers.<br>
+ * Every game owns its own context, so several games can run side by side within one JVM. The context is bound to the
+ * threads working for the game, the <code>current()</code> methods of the managers and renderers resolve through it.
+ *
+ * @author nZeloT
+ */
+public final class EngineContext {
+
+    private static final ThreadLocal<EngineContext> CURRENT = new ThreadLocal<>();
+
+    private final @Getter ShaderManager shaderManager;
+    private final @Getter TextureManager textureManager;
+    private final @Getter VertexArrayManager vertexArrayManager;
+    private final @Getter FrameBufferManager frameBufferManager;
+    private final @Getter MatrixBlock matrixBlock;
+    private final @Getter BatchRenderer batchRenderer;
+    private final @Getter InstanceRenderer instanceRenderer;
+
+    /** the GL work handed over by other threads */
+    private final @Getter GLCommandQueue commandQueue;
+
+    /** loads textures in the background */
+    private final @Getter AssetLoader assetLoader;
+
+    /** whether the context was initialized without a GL context */
+    private @Getter boolean headless;
+    private boolean init;
+
+    public EngineContext() {
+        this.commandQueue = new GLCommandQueue();
+        this.shaderManager = new ShaderManager(commandQueue);
+        this.textureManager = new TextureManager(commandQueue);
+        this.vertexArrayManager = new VertexArrayManager(commandQueue);
+        this.frameBufferManager = new FrameBufferManager(commandQueue);
+        this.assetLoader = new AssetLoader(textureManager, commandQueue);
+        this.matrixBlock = new MatrixBlock();
+        this.batchRenderer = new BatchRenderer();
+        this.instanceRenderer = new InstanceRenderer();
+    }
+
+    /**
+     * @return the context bound to the calling thread
+     * @throws IllegalStateException if there is none
+     */
+    public static EngineContext current() {
+        EngineContext context = CURRENT.get();
+
+        if (context == null) {
+            Logger.log(EngineContext.class, "No engine context bound to thread " + Thread.currentThread().getName(), Logger.LEVEL.ERROR);
+            throw new IllegalStateException("No engine context bound to thread " + Thread.currentThread().getName());
+        }
+
+        return context;
+    }
+
+    /**
+     * @return the context bound to the calling thread or <code>null</code> if there is none
+     */
+    public static EngineContext find() {
+        return CURRENT.get();
+    }
+
+    /**
+     * bind a context to the calling thread
+     *
+     * @param context the context; <code>null</code> to unbind
+     * @return the context bound before, to be restored afterwards
+     */
+    public static EngineContext bind(EngineContext context) {
+        EngineContext previous = CURRENT.get();
+
+        if (context == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(context);
+
+        return previous;
+    }
+
+    /**
+     * set up the managers and, if there is a GL context, the renderers. The context has to be bound to the calling
+     * thread, which becomes the owner of the command queue. This will be called from within the engine.
+     *
+     * @param headless whether there is no GL context
+     */
+    public void init(boolean headless) {
+        if (!init) {
+            this.headless = headless;
+
+            if (headless) {
+                commandQueue.runDirect();
+            } else {
+                commandQueue.bindOwner();
+                matrixBlock.init();
+            }
+
+            textureManager.init(headless);
+            vertexArrayManager.init(headless);
+            shaderManager.init(headless);
+            frameBufferManager.init(headless);
+
+            if (!headless) {
+                batchRenderer.init();
+                instanceRenderer.init();
+            }
+
+            init = true;
+        }
+    }
+
+    /**
+     * free everything created through the context. This will be called from within the engine.
+     */
+    public void exit() {
+        if (init) {
+            assetLoader.exit();
+
+            //run what is left while the GL context is still there
+            while (commandQueue.getPending() > 0)
+                commandQueue.execute();
+
+            instanceRenderer.exit();
+            batchRenderer.exit();
+            frameBufferManager.exit();
+            shaderManager.exit();
+            vertexArrayManager.exit();
+            textureManager.exit();
+            matrixBlock.exit();
+            commandQueue.close();
+
+            init = false;
+        }
+    }
+}
@@ -29,17 +29,23 @@ import com.nzelot.engine.utils.logging.Logger;
 import lombok.NonNull;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author nZeloT
  */
 public class FrameBufferManager extends Manager<FrameBuffer> {
 
-    //fixme this is only temporary
-    public static final FrameBufferManager instance = new FrameBufferManager();
+    /**
+     * @return the instance of the engine context bound to the calling thread
+     */
+    public static FrameBufferManager current() {
+        return EngineContext.current().getFrameBufferManager();
+    }
 
-    //prevent instantiation
-    private FrameBufferManager() {
+    //created by the EngineContext
+    FrameBufferManager(GLCommandQueue commands) {
+        super(commands);
     }
 
     public FrameBuffer create(@NonNull String key,
@@ -50,8 +56,42 @@ public class FrameBufferManager extends Manager<FrameBuffer> {
             throw new IllegalArgumentException("Tried to store already stored FrameBuffer with key: " + key);
         }
 
+        if (isHeadless())
+            return null;
+
+        FrameBuffer fbo = getCommands().invoke(() -> new FrameBuffer(width, heigth));
+        if (!store(key, fbo)) {
+            Logger.log(FrameBufferManager.class, "Tried to store already stored FrameBuffer with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored FrameBuffer with key: " + key);
+        }
+
+        return fbo;
+    }
+
+    /**
+     * create a frame buffer without waiting for it; it gets created on the thread owning the GL context
+     *
+     * @return the future frame buffer; <code>null</code> if headless
+     */
+    public CompletableFuture<FrameBuffer> createAsync(@NonNull String key, int width, int heigth){
+        if (isHeadless())
+            return CompletableFuture.completedFuture(null);
+
+        return getCommands().submit(() -> register(key, width, heigth));
+    }
+
+    //create and store the frame buffer; runs on the thread owning the GL context
+    private FrameBuffer register(String key, int width, int heigth){
+        if (objects.containsKey(key)) {
+            Logger.log(FrameBufferManager.class, "Tried to store already stored FrameBuffer with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored FrameBuffer with key: " + key);
+        }
+
         FrameBuffer fbo = new FrameBuffer(width, heigth);
-        objects.put(key, fbo);
+        if (!store(key, fbo)) {
+            Logger.log(FrameBufferManager.class, "Tried to store already stored FrameBuffer with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored FrameBuffer with key: " + key);
+        }
 
         return fbo;
     }
@@ -0,0 +1,233 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * GL work handed over to the thread owning the GL context.<br>
+ * Work submitted on the owning thread runs right away. Work from any other thread is queued and executed by the
+ * owning thread at a safe point of every frame, as long as the per frame budget allows. At least one command runs
+ * per frame, so the queue always makes progress.
+ *
+ * @author nZeloT
+ */
+public class GLCommandQueue {
+
+    private final Queue<Command<?>> commands;
+
+    //the thread owning the GL context
+    private volatile Thread owner;
+
+    //without a GL context there is nothing to hand over, so every thread runs its work itself
+    private volatile boolean direct;
+    private volatile boolean closed;
+
+    /** the time in milliseconds the queued work may take per frame */
+    private @Getter double budget;
+
+    /** the number of commands executed within the last frame */
+    private @Getter int executed;
+
+    GLCommandQueue() {
+        this.commands = new ConcurrentLinkedQueue<>();
+        this.budget = 2;
+    }
+
+    /**
+     * @param budget the time in milliseconds the queued work may take per frame; 2 by default
+     */
+    public void setBudget(double budget) {
+        if (budget < 0) {
+            Logger.log(GLCommandQueue.class, "Invalid budget: " + budget, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid budget: " + budget);
+        }
+
+        this.budget = budget;
+    }
+
+    /**
+     * @return true if the calling thread owns the GL context
+     */
+    public boolean isOwner() {
+        return direct || Thread.currentThread() == owner;
+    }
+
+    /**
+     * @return the number of commands waiting for the owning thread
+     */
+    public int getPending() {
+        return commands.size();
+    }
+
+    /**
+     * run GL work on the owning thread without waiting for it
+     *
+     * @param work the work
+     * @return the future result of the work
+     */
+    public <R> CompletableFuture<R> submit(@NonNull Supplier<R> work) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+
+        if (isOwner()) {
+            complete(result, work);
+        } else if (closed) {
+            result.completeExceptionally(new IllegalStateException("The GL context is gone"));
+        } else {
+            commands.add(new Command<>(work, result));
+
+            //close() may have drained the queue before the command got in; nobody would ever run it
+            if (closed)
+                failPending();
+        }
+
+        return result;
+    }
+
+    /**
+     * run GL work on the owning thread and wait for it. Must not be called from a thread the owning thread waits for.
+     * Fails with an <code>IllegalStateException</code> if the queue gets closed before the work ran.
+     *
+     * @param work the work
+     * @return the result of the work
+     */
+    public <R> R invoke(@NonNull Supplier<R> work) {
+        if (isOwner())
+            return work.get();
+
+        try {
+            return submit(work).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * run GL work on the owning thread and wait for it
+     *
+     * @param work the work
+     */
+    public void invoke(@NonNull Runnable work) {
+        invoke(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * execute the queued commands until the budget is used up. Has to be called from the owning thread.
+     * This will be called from within the engine.
+     *
+     * @return the number of commands executed
+     */
+    public int execute() {
+        long deadline = System.nanoTime() + (long) (budget * 1000000);
+
+        int count = 0;
+        Command<?> command;
+        while ((command = commands.poll()) != null) {
+            command.run();
+            count++;
+
+            if (System.nanoTime() >= deadline)
+                break;
+        }
+
+        executed = count;
+        return count;
+    }
+
+    /**
+     * make the calling thread the owner of the queue. This will be called from within the engine.
+     */
+    void bindOwner() {
+        this.owner = Thread.currentThread();
+        this.closed = false;
+    }
+
+    /**
+     * let every thread run its work right away as there is no GL context. This will be called from within the engine.
+     */
+    void runDirect() {
+        this.direct = true;
+        this.closed = false;
+    }
+
+    /**
+     * fail all the commands still waiting; the GL context is about to go away. This will be called from within the engine.
+     */
+    void close() {
+        closed = true;
+        owner = null;
+        direct = false;
+
+        failPending();
+    }
+
+    //fail every queued command; the queue is closed, so they would wait forever
+    private void failPending() {
+        Command<?> command;
+        int dropped = 0;
+        while ((command = commands.poll()) != null) {
+            command.result.completeExceptionally(new IllegalStateException("The GL context is gone"));
+            dropped++;
+        }
+
+        if (dropped > 0)
+            Logger.log(GLCommandQueue.class, "Dropped " + dropped + " GL commands on exit", Logger.LEVEL.WARNING);
+    }
+
+    private static <R> void complete(CompletableFuture<R> result, Supplier<R> work) {
+        try {
+            result.complete(work.get());
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+        }
+    }
+
+    private static class Command<R> {
+        private final Supplier<R> work;
+        private final CompletableFuture<R> result;
+
+        private Command(Supplier<R> work, CompletableFuture<R> result) {
+            this.work = work;
+            this.result = result;
+        }
+
+        private void run() {
+            complete(result, work);
+        }
+    }
+}
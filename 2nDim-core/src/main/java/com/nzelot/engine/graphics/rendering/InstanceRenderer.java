@@ -0,0 +1,215 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+
+/**
+ * Draws quads with hardware instancing. All the quads share the geometry of <code>VertexArrayManager.STANDARD.SQUARE</code>
+ * and only ten floats per quad are written straight into the streaming instance buffer of the geometry. Consecutive quads using the same shader and texture end up in a single
+ * <code>glDrawElementsInstanced</code> call.
+ * <p>
+ * Sprites are drawn with the textured shader as their texture region already is resolved on the CPU.
+ *
+ * @author nZeloT
+ */
+public class InstanceRenderer implements QuadRenderer {
+
+    /**
+     * @return the instance of the engine context bound to the calling thread
+     */
+    public static InstanceRenderer current() {
+        return EngineContext.current().getInstanceRenderer();
+    }
+
+    /** the floats of the per instance attributes: rotation and scale, translation, color or texture region */
+    public static final int[] INSTANCE_LAYOUT = {4, 2, 4};
+
+    /** the maximum number of instances in one draw call */
+    public static final int MAX_INSTANCES = 16384;
+
+    private VertexArray geometry;
+    private DynamicVertexBuffer instances;
+
+    private Shader colorShader;
+    private Shader textureShader;
+    private Shader circleShader;
+    private Uniform texUniform;
+
+    private Shader shader;
+    private Texture texture;
+    private int instanceCount;
+    //the number of instances reserved for the current run
+    private int runCapacity;
+
+    private boolean init;
+    private boolean drawing;
+
+    private @Getter int drawCalls;
+    private @Getter int instancesDrawn;
+
+    //created by the EngineContext
+    InstanceRenderer() {
+    }
+
+    /**
+     * fetch the instanced shaders and the shared geometry. This will be called from within the engine.
+     */
+    public void init() {
+        if (!init) {
+            geometry = VertexArrayManager.current().get(VertexArrayManager.STANDARD.SQUARE);
+            instances = geometry.getInstances();
+
+            colorShader = ShaderManager.current().get(ShaderManager.STANDARD.SQUARE_INSTANCED);
+            textureShader = ShaderManager.current().get(ShaderManager.STANDARD.SQUARE_TEXTURE_INSTANCED);
+            circleShader = ShaderManager.current().get(ShaderManager.STANDARD.CIRCLE_INSTANCED);
+            texUniform = textureShader.uniform("tex");
+
+            init = true;
+        }
+    }
+
+    /**
+     * drop all the references. This will be called from within the engine.
+     */
+    public void exit() {
+        if (init) {
+            instances = null;
+            geometry = null;
+            colorShader = null;
+            textureShader = null;
+            circleShader = null;
+            texUniform = null;
+            shader = null;
+            texture = null;
+
+            init = false;
+        }
+    }
+
+    @Override
+    public void begin() {
+        if (drawing) {
+            Logger.log(InstanceRenderer.class, "Called begin() without calling end() first!", Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Called begin() without calling end() first!");
+        }
+
+        texUniform.set(1);
+        instances.nextFrame();
+
+        drawCalls = 0;
+        instancesDrawn = 0;
+        shader = null;
+        texture = null;
+        drawing = true;
+    }
+
+    @Override
+    public void drawQuad(@NonNull Matrix4f transformation, @NonNull Vector4f color) {
+        prepare(colorShader, null);
+        instance(transformation, color.x, color.y, color.z, color.w);
+    }
+
+    @Override
+    public void drawQuad(@NonNull Matrix4f transformation, @NonNull Texture tex, float u0, float v0, float u1, float v1) {
+        prepare(textureShader, tex);
+        instance(transformation, u0, v0, u1, v1);
+    }
+
+    @Override
+    public void drawCircle(@NonNull Matrix4f transformation, @NonNull Vector4f color) {
+        prepare(circleShader, null);
+        instance(transformation, color.x, color.y, color.z, color.w);
+    }
+
+    @Override
+    public void flush() {
+        if (instanceCount == 0)
+            return;
+
+        instances.end();
+
+        shader.bind();
+        if (texture != null)
+            texture.bind();
+
+        geometry.bind();
+        geometry.renderInstanced(instanceCount);
+
+        drawCalls++;
+        instancesDrawn += instanceCount;
+
+        instanceCount = 0;
+    }
+
+    @Override
+    public void end() {
+        if (!drawing) {
+            Logger.log(InstanceRenderer.class, "Called end() without calling begin() first!", Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Called end() without calling begin() first!");
+        }
+
+        flush();
+        drawing = false;
+    }
+
+    //flush if the instance does not share the shader and texture of the current run
+    private void prepare(Shader s, Texture tex) {
+        if (!drawing) {
+            Logger.log(InstanceRenderer.class, "Tried to draw without calling begin() first!", Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Tried to draw without calling begin() first!");
+        }
+
+        if (instanceCount == runCapacity || s != shader || !sameTexture(tex, texture))
+            flush();
+
+        shader = s;
+        texture = tex;
+
+        if (instanceCount == 0) {
+            //only reserve what is left of the region; a full region splits the run instead of moving on to the next
+            //region, which may still be read by the GPU
+            int remaining = instances.getRemaining();
+            runCapacity = remaining > 0 ? remaining : MAX_INSTANCES;
+            instances.begin(runCapacity);
+        }
+    }
+
+    //textures of the same atlas page share one OpenGL texture
+    private static boolean sameTexture(Texture a, Texture b) {
+        return a == b || (a != null && b != null && a.getID() == b.getID());
+    }
+
+    private void instance(Matrix4f m, float d0, float d1, float d2, float d3) {
+        instances.put(m.m00, m.m01, m.m10, m.m11)
+                .put(m.m30, m.m31)
+                .put(d0, d1, d2, d3);
+        instanceCount++;
+    }
+}
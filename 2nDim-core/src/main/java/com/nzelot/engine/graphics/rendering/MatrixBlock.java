@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.joml.Matrix4f;
+import org.lwjgl.BufferUtils;
+
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+
+/**
+ * A uniform buffer holding the projection and the camera matrix. It is bound to a fixed binding point and shared by
+ * every shader declaring the block:
+ * <pre>
+ * layout (std140) uniform Matrices {
+ *     mat4 pr_matrix;
+ *     mat4 cm_matrix;
+ * };
+ * </pre>
+ * This way the matrices only need to be uploaded once per camera and frame instead of once per object.
+ *
+ * @author nZeloT
+ */
+public class MatrixBlock {
+
+    /**
+     * @return the instance of the engine context bound to the calling thread
+     */
+    public static MatrixBlock current() {
+        return EngineContext.current().getMatrixBlock();
+    }
+
+    /** the name of the uniform block within the shaders */
+    public static final String NAME = "Matrices";
+
+    /** the binding point the block is attached to */
+    public static final int BINDING = 0;
+
+    //two std140 mat4
+    private static final int SIZE = 2 * 16;
+
+    private int ubo;
+    private FloatBuffer buffer;
+    private boolean init;
+
+    private @Getter int uploads;
+
+    //created by the EngineContext
+    MatrixBlock() {
+    }
+
+    /**
+     * create the buffer and attach it to the binding point. This will be called from within the engine.
+     */
+    public void init() {
+        if (!init) {
+            buffer = BufferUtils.createFloatBuffer(SIZE);
+
+            ubo = glGenBuffers();
+            glBindBuffer(GL_UNIFORM_BUFFER, ubo);
+            glBufferData(GL_UNIFORM_BUFFER, SIZE << 2, GL_DYNAMIC_DRAW);
+            glBindBuffer(GL_UNIFORM_BUFFER, 0);
+
+            glBindBufferBase(GL_UNIFORM_BUFFER, BINDING, ubo);
+
+            init = true;
+        }
+    }
+
+    /**
+     * free the buffer. This will be called from within the engine.
+     */
+    public void exit() {
+        if (init) {
+            glBindBufferBase(GL_UNIFORM_BUFFER, BINDING, 0);
+            glDeleteBuffers(ubo);
+            buffer = null;
+            init = false;
+        }
+    }
+
+    /**
+     * push new matrices to every shader using the block
+     *
+     * @param projection the new projection matrix
+     * @param camera     the new camera matrix
+     */
+    public void upload(@NonNull Matrix4f projection, @NonNull Matrix4f camera) {
+        if (init) {
+            projection.get(0, buffer);
+            camera.get(16, buffer);
+
+            glBindBuffer(GL_UNIFORM_BUFFER, ubo);
+            glBufferSubData(GL_UNIFORM_BUFFER, 0, buffer);
+            glBindBuffer(GL_UNIFORM_BUFFER, 0);
+
+            uploads++;
+        }
+    }
+
+    /**
+     * attach the block of the given program to the binding point if the program declares it
+     *
+     * @param program the id of the shader program
+     */
+    static void bindProgram(int program) {
+        int index = glGetUniformBlockIndex(program, NAME);
+        if (index != GL_INVALID_INDEX)
+            glUniformBlockBinding(program, index, BINDING);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+
+/**
+ * Something able to draw a lot of unit quads in as few draw calls as possible.<br>
+ * Every quad is described by the transformation of the unit quad (as in <code>VertexArrayManager.STANDARD.SQUARE</code>)
+ * into world space and either a color or a texture region.
+ * <p>
+ * Usage: <code>begin()</code>, any number of <code>drawXXX()</code> calls, <code>end()</code>.
+ *
+ * @author nZeloT
+ */
+public interface QuadRenderer {
+
+    /**
+     * start collecting quads. The quads are transformed with the matrices currently held by the <code>MatrixBlock</code>
+     */
+    void begin();
+
+    /**
+     * add a single colored quad
+     *
+     * @param transformation the transformation of the unit quad into world space
+     * @param color          the color of the quad
+     */
+    void drawQuad(Matrix4f transformation, Vector4f color);
+
+    /**
+     * add a single textured quad. <code>u0, v0</code> are mapped to the lower left corner
+     * and <code>u1, v1</code> to the upper right corner of the quad.
+     * The coordinates address the whole OpenGL texture, so atlas regions have to be mapped with <code>Texture.mapU/mapV</code> first.
+     *
+     * @param transformation the transformation of the unit quad into world space
+     * @param tex            the texture to use
+     */
+    void drawQuad(Matrix4f transformation, Texture tex, float u0, float v0, float u1, float v1);
+
+    /**
+     * add a single colored circle which fills the unit quad
+     *
+     * @param transformation the transformation of the unit quad into world space
+     * @param color          the color of the circle
+     */
+    void drawCircle(Matrix4f transformation, Vector4f color);
+
+    /**
+     * draw everything collected so far. Call this before rendering anything else to keep the painters order.
+     */
+    void flush();
+
+    /**
+     * draw whatever is left and stop collecting quads
+     */
+    void end();
+}
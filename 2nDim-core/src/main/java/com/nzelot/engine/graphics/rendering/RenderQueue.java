@@ -0,0 +1,188 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import java.util.Arrays;
+
+/**
+ * A list of draws, each identified by an <code>int</code> value and ordered by a 64 bit sort key.<br>
+ * The keys are built in a way that sorting them groups draws sharing the same render state while keeping the layers
+ * in order. Translucent draws are kept in submission order after the opaque draws of their layer.
+ * <pre>
+ * opaque:      | layer (16) | 0 | shader (12) | texture (16) | vao (8) | unused (11) |
+ * translucent: | layer (16) | 1 | sequence (47)                                       |
+ * </pre>
+ * Sorting is done with a LSD radix sort on the primitive arrays which is stable and does not allocate once the
+ * queue has grown to its working size.
+ *
+ * @author nZeloT
+ */
+public class RenderQueue {
+
+    private static final int LAYER_SHIFT = 48;
+    private static final long TRANSLUCENT_BIT = 1L << 47;
+    private static final int SHADER_SHIFT = 35;
+    private static final int TEXTURE_SHIFT = 19;
+    private static final int VAO_SHIFT = 11;
+
+    private long[] keys;
+    private int[] values;
+
+    private long[] tmpKeys;
+    private int[] tmpValues;
+
+    private final int[] count;
+
+    private int size;
+
+    public RenderQueue() {
+        this(64);
+    }
+
+    public RenderQueue(int initialCapacity) {
+        initialCapacity = Math.max(initialCapacity, 1);
+
+        keys = new long[initialCapacity];
+        values = new int[initialCapacity];
+        tmpKeys = new long[initialCapacity];
+        tmpValues = new int[initialCapacity];
+
+        count = new int[256];
+        size = 0;
+    }
+
+    /**
+     * build the key of an opaque draw
+     *
+     * @param layer   the z-index of the draw
+     * @param shader  the id of the shader program
+     * @param texture the id of the texture; 0 if none
+     * @param vao     the id of the vertex array
+     * @return the sort key
+     */
+    public static long opaqueKey(int layer, int shader, int texture, int vao) {
+        return layerBits(layer)
+                | ((long) (shader & 0xFFF) << SHADER_SHIFT)
+                | ((long) (texture & 0xFFFF) << TEXTURE_SHIFT)
+                | ((long) (vao & 0xFF) << VAO_SHIFT);
+    }
+
+    /**
+     * build the key of a translucent draw. Those are kept in submission order within their layer
+     *
+     * @param layer    the z-index of the draw
+     * @param sequence the submission order of the draw
+     * @return the sort key
+     */
+    public static long translucentKey(int layer, int sequence) {
+        return layerBits(layer) | TRANSLUCENT_BIT | (sequence & 0x7FFFFFFFL);
+    }
+
+    //map the signed z-index onto 16 unsigned bits
+    private static long layerBits(int layer) {
+        int l = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, layer)) - Short.MIN_VALUE;
+        return (long) l << LAYER_SHIFT;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(long key, int value) {
+        if (size == keys.length)
+            grow();
+
+        keys[size] = key;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * sort the queue by the keys in ascending unsigned order. Draws with equal keys keep their submission order.
+     */
+    public void sort() {
+        long[] srcK = keys, dstK = tmpKeys;
+        int[] srcV = values, dstV = tmpValues;
+
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(count, 0);
+            for (int i = 0; i < size; i++)
+                count[(int) (srcK[i] >>> shift) & 0xFF]++;
+
+            //all keys share this byte; nothing to do
+            if (size == 0 || count[(int) (srcK[0] >>> shift) & 0xFF] == size)
+                continue;
+
+            int sum = 0;
+            for (int b = 0; b < 256; b++) {
+                int c = count[b];
+                count[b] = sum;
+                sum += c;
+            }
+
+            for (int i = 0; i < size; i++) {
+                int p = count[(int) (srcK[i] >>> shift) & 0xFF]++;
+                dstK[p] = srcK[i];
+                dstV[p] = srcV[i];
+            }
+
+            long[] tk = srcK; srcK = dstK; dstK = tk;
+            int[] tv = srcV; srcV = dstV; dstV = tv;
+        }
+
+        keys = srcK;
+        values = srcV;
+        tmpKeys = dstK;
+        tmpValues = dstV;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index the position within the queue
+     * @return the value stored at the given position
+     */
+    public int get(int index) {
+        return values[index];
+    }
+
+    /**
+     * @param index the position within the queue
+     * @return the key stored at the given position
+     */
+    public long getKey(int index) {
+        return keys[index];
+    }
+
+    private void grow() {
+        int capacity = keys.length << 1;
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        tmpKeys = new long[capacity];
+        tmpValues = new int[capacity];
+    }
+}
@@ -29,9 +29,7 @@ import com.nzelot.engine.utils.logging.Logger;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
-import org.lwjgl.BufferUtils;
 
-import java.nio.FloatBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -48,25 +46,32 @@ import static org.lwjgl.opengl.GL20.*;
  * @author TheCherno
  * @author nZeloT
  */
-//todo use uniform blocks for the projection and camera matrices instead of uniforms for each shader
 public class Shader extends ManagedObject {
 
     public static final int VERTEX_ATTRIB = 0;
     public static final int TCOORD_ATTRIB = 1;
+    public static final int COLOR_ATTRIB = 2;
+    public static final int MODE_ATTRIB = 3;
+    public static final int INSTANCE_XFORM_ATTRIB = 4;
+    public static final int INSTANCE_POS_ATTRIB = 5;
+    public static final int INSTANCE_DATA_ATTRIB = 6;
 
     private static int bound;
 
     private boolean enabled;
 
     private int ID;
-    private Map<String, Integer> locationCache;
-    private FloatBuffer buffer;
+    private Map<String, Uniform> uniforms;
+
+    //the manager of the context this program belongs to
+    final ShaderManager manager;
 
     // only visible within the package to prevent instantiation from outside the ShaderManager
-    Shader(String vertex, String fragment) {
+    Shader(ShaderManager manager, String vertex, String fragment) {
+        this.manager = manager;
         ID = ShaderUtils.create(vertex, fragment);
-        locationCache = new HashMap<>(16);
-        buffer = BufferUtils.createFloatBuffer(16);
+        MatrixBlock.bindProgram(ID);
+        uniforms = new HashMap<>(16);
         enabled = true;
     }
 
@@ -78,19 +83,6 @@ public class Shader extends ManagedObject {
         Shader.bound = 0;
     }
 
-    /**
-     * push a new value to a <code>uniform int</code>
-     *
-     * @param name  the name of the int
-     * @param value the new value
-     */
-    public void setUniform1i(String name, int value) {
-        if(enabled) {
-            bind();
-            glUniform1i(getUniform(name), value);
-        }
-    }
-
     /**
      * bind the shader for usage
      * all the setXXX methods call bind if necessary
@@ -103,22 +95,37 @@ public class Shader extends ManagedObject {
     }
 
     /**
-     * get the id of the uniform with the spcified name
+     * get a handle to the uniform with the specified name. Keep the handle around instead of using the
+     * <code>setUniformXXX</code> methods to avoid the lookup by name on every upload.
      *
      * @param name the name of the uniform
-     * @return the ID of the uniform
+     * @return the handle of the uniform
      */
-    private int getUniform(String name) {
-        if (locationCache.containsKey(name))
-            return locationCache.get(name);
+    public Uniform uniform(String name) {
+        Uniform u = uniforms.get(name);
+        if (u != null)
+            return u;
 
-        int result = glGetUniformLocation(ID, name);
-        if (result == -1) {
+        int location = glGetUniformLocation(ID, name);
+        if (location == -1) {
             Logger.log(Shader.class, "Tried to get OpenGL ID of uniform value: " + name, Logger.LEVEL.ERROR);
             throw new IllegalArgumentException("Tried to get OpenGL ID of uniform value: " + name);
-        }else
-            locationCache.put(name, result);
-        return result;
+        }
+
+        u = new Uniform(this, name, location);
+        uniforms.put(name, u);
+        return u;
+    }
+
+    /**
+     * push a new value to a <code>uniform int</code>
+     *
+     * @param name  the name of the int
+     * @param value the new value
+     */
+    public void setUniform1i(String name, int value) {
+        if(enabled)
+            uniform(name).set(value);
     }
 
     /**
@@ -127,17 +134,13 @@ public class Shader extends ManagedObject {
      * @param value the new value
      */
     public void setUniform1f(String name, float value) {
-        if(enabled) {
-            bind();
-            glUniform1f(getUniform(name), value);
-        }
+        if(enabled)
+            uniform(name).set(value);
     }
 
     public void setUniform2f(String name, float x, float y) {
-        if(enabled) {
-            bind();
-            glUniform2f(getUniform(name), x, y);
-        }
+        if(enabled)
+            uniform(name).set(x, y);
     }
 
     /**
@@ -146,10 +149,8 @@ public class Shader extends ManagedObject {
      * @param vector the new values
      */
     public void setUniform3f(String name, Vector3f vector) {
-        if(enabled) {
-            bind();
-            glUniform3f(getUniform(name), vector.x, vector.y, vector.z);
-        }
+        if(enabled)
+            uniform(name).set(vector);
     }
 
     /**
@@ -159,10 +160,8 @@ public class Shader extends ManagedObject {
      * @param vector the new values
      */
     public void setUniform4f(String name, Vector4f vector) {
-        if(enabled) {
-            bind();
-            glUniform4f(getUniform(name), vector.x, vector.y, vector.z, vector.w);
-        }
+        if(enabled)
+            uniform(name).set(vector);
     }
 
     /**
@@ -171,15 +170,15 @@ public class Shader extends ManagedObject {
      * @param matrix the new values
      */
     public void setUniformMat4f(String name, Matrix4f matrix) {
-        if(enabled) {
-            bind();
+        if(enabled)
+            uniform(name).set(matrix);
+    }
 
-            matrix.get(buffer);
-            buffer.position(16); //Because reasons ...
-            buffer.flip(); // For the sake of god. Do not forget!
-            glUniformMatrix4fv(getUniform(name), false, buffer);
-            buffer.clear(); //Prepare for next round :D
-        }
+    /**
+     * @return the OpenGL ID of the program
+     */
+    public int getID() {
+        return ID;
     }
 
     protected void delete(){
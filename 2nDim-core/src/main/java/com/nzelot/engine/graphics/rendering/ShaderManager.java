@@ -25,12 +25,12 @@
 package com.nzelot.engine.graphics.rendering;
 
 import com.nzelot.engine.definition.Manager;
-import com.nzelot.engine.utils.FileUtils;
-import com.nzelot.engine.utils.ResourceUtils;
 import com.nzelot.engine.utils.logging.Logger;
 import lombok.Getter;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author nZeloT
@@ -38,11 +38,47 @@ import java.util.Map;
 //doc here
 public class ShaderManager extends Manager<Shader> {
 
-    //fixme this is only temporary
-    public static final ShaderManager instance = new ShaderManager();
+    //uniform uploads of the shaders of this context; see Uniform
+    private final LongAdder issuedUploads = new LongAdder();
+    private final LongAdder skippedUploads = new LongAdder();
 
-    //prevent instantiation
-    private ShaderManager() {
+    /**
+     * @return the instance of the engine context bound to the calling thread
+     */
+    public static ShaderManager current() {
+        return EngineContext.current().getShaderManager();
+    }
+
+    //created by the EngineContext
+    ShaderManager(GLCommandQueue commands) {
+        super(commands);
+    }
+
+    /**
+     * @return the number of uniform uploads actually sent to OpenGL since the last reset
+     */
+    public long getIssuedUploads() {
+        return issuedUploads.sum();
+    }
+
+    /**
+     * @return the number of uniform uploads skipped since the last reset because the value did not change
+     */
+    public long getSkippedUploads() {
+        return skippedUploads.sum();
+    }
+
+    public void resetUploadCounters() {
+        issuedUploads.reset();
+        skippedUploads.reset();
+    }
+
+    void countIssuedUpload() {
+        issuedUploads.increment();
+    }
+
+    void countSkippedUpload() {
+        skippedUploads.increment();
     }
 
     /**
@@ -71,11 +107,48 @@ public class ShaderManager extends Manager<Shader> {
             throw new IllegalArgumentException("Tried to load already existing shader with key: " + key);
         }
 
-        String vert = FileUtils.loadAsString(vertPath);
-        String frag = FileUtils.loadAsString(fragPath);
-        Shader s = new Shader(vert, frag);
+        if (isHeadless())
+            return null;
 
-        objects.put(key, s);
+        String vert = AssetCache.fileSource(vertPath);
+        String frag = AssetCache.fileSource(fragPath);
+        Shader s = getCommands().invoke(() -> new Shader(this, vert, frag));
+
+        if (!store(key, s)) {
+            Logger.log(ShaderManager.class, "Tried to load already existing shader with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to load already existing shader with key: " + key);
+        }
+
+        return s;
+    }
+
+    /**
+     * load one of your own shaders without waiting for it. The sources are read on a worker, the shader gets compiled
+     * on the thread owning the GL context.
+     *
+     * @return the future shader; <code>null</code> if headless
+     * @see #create(String, String, String)
+     */
+    public CompletableFuture<Shader> createAsync(String key, String vertPath, String fragPath) {
+        if (isHeadless())
+            return CompletableFuture.completedFuture(null);
+
+        return CompletableFuture.supplyAsync(() -> new String[]{AssetCache.fileSource(vertPath), AssetCache.fileSource(fragPath)})
+                .thenCompose(src -> getCommands().submit(() -> register(key, src[0], src[1])));
+    }
+
+    //compile, link and store the shader; runs on the thread owning the GL context
+    private Shader register(String key, String vert, String frag) {
+        if (objects.containsKey(key)) {
+            Logger.log(ShaderManager.class, "Tried to load already existing shader with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to load already existing shader with key: " + key);
+        }
+
+        Shader s = new Shader(this, vert, frag);
+        if (!store(key, s)) {
+            Logger.log(ShaderManager.class, "Tried to load already existing shader with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to load already existing shader with key: " + key);
+        }
 
         return s;
     }
@@ -89,9 +162,12 @@ public class ShaderManager extends Manager<Shader> {
      * @return the new Standard Shader
      */
     public Shader replaceStandardShader(STANDARD std, String vertPath, String fragPath) {
-        String vert = FileUtils.loadAsString(vertPath);
-        String frag = FileUtils.loadAsString(fragPath);
-        Shader s = new Shader(vert, frag);
+        if (isHeadless())
+            return null;
+
+        String vert = AssetCache.fileSource(vertPath);
+        String frag = AssetCache.fileSource(fragPath);
+        Shader s = getCommands().invoke(() -> new Shader(this, vert, frag));
 
         objects.put(std.getKey(), s);
 
@@ -107,9 +183,9 @@ public class ShaderManager extends Manager<Shader> {
 
             STANDARD[] standards = STANDARD.values();
             for (STANDARD standard : standards) {
-                String vert = ResourceUtils.loadAsString(standard.getVertPath());
-                String frag = ResourceUtils.loadAsString(standard.getFragPath());
-                s = new Shader(vert, frag);
+                String vert = AssetCache.resourceSource(standard.getVertPath());
+                String frag = AssetCache.resourceSource(standard.getFragPath());
+                s = new Shader(this, vert, frag);
 
                 objects.put(standard.getKey(), s);
             }
@@ -125,7 +201,11 @@ public class ShaderManager extends Manager<Shader> {
         SQUARE_TEXTURE("com.nzelot.2nDim.shader.standard.square_tex", "res/shader/simpleTex.vert", "res/shader/simpleTexturedAmbiant.frag"),
         SQUARE_SPRITE("com.nzelot.2nDim.shader.standard.square_sprite", "res/shader/simpleTex.vert", "res/shader/simpleSpriteAmbiant.frag"),
         CIRCLE("com.nzelot.2nDim.shader.standard.circle", "res/shader/simpleTex.vert", "res/shader/simpleAmbiantCircle.frag"),
-        CIRLCE_TEXTURE("com.nzelot.2nDim.shader.standard.circle_tex", "res/shader/simpleTex.vert", "res/shader/simpleTexturedAmbiantCircle.frag");
+        CIRLCE_TEXTURE("com.nzelot.2nDim.shader.standard.circle_tex", "res/shader/simpleTex.vert", "res/shader/simpleTexturedAmbiantCircle.frag"),
+        BATCH("com.nzelot.2nDim.shader.standard.batch", "res/shader/batch.vert", "res/shader/batch.frag"),
+        SQUARE_INSTANCED("com.nzelot.2nDim.shader.standard.square_instanced", "res/shader/instanced.vert", "res/shader/instancedAmbiant.frag"),
+        SQUARE_TEXTURE_INSTANCED("com.nzelot.2nDim.shader.standard.square_tex_instanced", "res/shader/instanced.vert", "res/shader/instancedTexturedAmbiant.frag"),
+        CIRCLE_INSTANCED("com.nzelot.2nDim.shader.standard.circle_instanced", "res/shader/instanced.vert", "res/shader/instancedAmbiantCircle.frag");
 
         private @Getter String key;
 
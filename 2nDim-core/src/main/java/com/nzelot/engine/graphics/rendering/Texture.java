@@ -26,7 +26,6 @@ package com.nzelot.engine.graphics.rendering;
 
 import com.nzelot.engine.definition.ManagedObject;
 import lombok.Getter;
-import third.party.PNGDecoder;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -35,7 +34,10 @@ import java.nio.ByteBuffer;
 import static org.lwjgl.opengl.GL11.*;
 
 /**
- * holds a OpenGL Texture
+ * holds a OpenGL Texture<br>
+ * A texture packed into a <code>TextureAtlas</code> shares the OpenGL texture of its atlas page
+ * and only covers the sub-rectangle <code>(u0, v0) - (u1, v1)</code> of it.
+ * Use <code>mapU</code>/<code>mapV</code> to translate texture coordinates into page coordinates.
  *
  * @author nZeloT
  */
@@ -48,45 +50,136 @@ public class Texture extends ManagedObject {
     private int texID;
     private boolean enabled;
 
+    //the region of the OpenGL texture covered by this texture
+    private @Getter float u0, v0, u1, v1;
+
+    //false if the OpenGL texture belongs to an atlas page or to the placeholder
+    private boolean owner;
+
+    //shows a placeholder until the pixels got loaded
+    private volatile boolean loading;
+
     Texture(InputStream inputStream) {
         this.texID = load(inputStream);
         this.enabled = true;
+        this.owner = true;
+        this.u1 = this.v1 = 1;
     }
 
     Texture(int texID){
         this.texID = texID;
         this.enabled = true;
+        this.owner = true;
+        this.u1 = this.v1 = 1;
     }
 
-    private int load(InputStream in) {
-        int result;
+    Texture(TextureData data){
+        this.texID = upload(data.getWidth(), data.getHeight(), data.getPixels());
+        this.width = data.getWidth();
+        this.height = data.getHeight();
+        this.enabled = true;
+        this.owner = true;
+        this.u1 = this.v1 = 1;
+    }
 
-        try {
+    //stands in for a texture which is still loading by showing the placeholder
+    Texture(Texture placeholder){
+        this.texID = placeholder.texID;
+        this.width = placeholder.width;
+        this.height = placeholder.height;
+        this.u0 = placeholder.u0;
+        this.v0 = placeholder.v0;
+        this.u1 = placeholder.u1;
+        this.v1 = placeholder.v1;
+        this.enabled = true;
+        this.owner = false;
+        this.loading = true;
+    }
 
-            PNGDecoder decoder = new PNGDecoder(in);
-            this.width = decoder.getWidth();
-            this.height = decoder.getHeight();
+    //a region of an atlas page which is not yet packed
+    Texture(int width, int height){
+        this.texID = 0;
+        this.width = width;
+        this.height = height;
+        this.enabled = false;
+        this.owner = false;
+    }
 
-            ByteBuffer buffer = ByteBuffer.allocateDirect(4 * width * height);
-            decoder.decode(buffer, 4 * width, PNGDecoder.Format.RGBA);
-            buffer.flip();
+    private int load(InputStream in) {
+        try {
 
-            //TODO: add opengl error handling here
-            result = glGenTextures();
-            glBindTexture(GL_TEXTURE_2D, result);
-            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
-            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
-            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
-            glBindTexture(GL_TEXTURE_2D, 0);
+            TextureData data = TextureData.decode(in);
+            this.width = data.getWidth();
+            this.height = data.getHeight();
+
+            return upload(width, height, data.getPixels());
 
         } catch (IOException e) {
             e.printStackTrace();
             return -1;
         }
+    }
+
+    private static int upload(int width, int height, ByteBuffer pixels) {
+        //TODO: add opengl error handling here
+        int result = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, result);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, pixels);
+        glBindTexture(GL_TEXTURE_2D, 0);
+        Texture.bound = 0;
 
         return result;
     }
 
+    //called by the atlas once the region got its place on a page
+    void assign(Texture page, int x, int y) {
+        this.texID = page.texID;
+        this.u0 = x / (float) page.width;
+        this.v0 = y / (float) page.height;
+        this.u1 = (x + width) / (float) page.width;
+        this.v1 = (y + height) / (float) page.height;
+        this.enabled = true;
+    }
+
+    //called once the pixels of a loading texture arrived; replaces the placeholder
+    void replace(TextureData data) {
+        if (!enabled)
+            return;
+
+        this.texID = upload(data.getWidth(), data.getHeight(), data.getPixels());
+        this.width = data.getWidth();
+        this.height = data.getHeight();
+        this.u0 = this.v0 = 0;
+        this.u1 = this.v1 = 1;
+        this.owner = true;
+        this.loading = false;
+    }
+
+    /**
+     * @return true while the texture shows a placeholder because its pixels are still loading
+     */
+    public boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * @param u a horizontal texture coordinate of this texture
+     * @return the horizontal coordinate inside the OpenGL texture
+     */
+    public float mapU(float u) {
+        return u0 + u * (u1 - u0);
+    }
+
+    /**
+     * @param v a vertical texture coordinate of this texture
+     * @return the vertical coordinate inside the OpenGL texture
+     */
+    public float mapV(float v) {
+        return v0 + v * (v1 - v0);
+    }
+
     public static void unbind() {
         glBindTexture(GL_TEXTURE_2D, 0);
         Texture.bound = 0;
@@ -99,11 +192,21 @@ public class Texture extends ManagedObject {
         }
     }
 
+    /**
+     * @return the OpenGL ID of the texture
+     */
+    public int getID() {
+        return texID;
+    }
+
     @Override
     protected void delete() {
         if(enabled){
-            Texture.unbind();
-            glDeleteTextures(texID);
+            //the atlas page is deleted on its own
+            if(owner) {
+                Texture.unbind();
+                glDeleteTextures(texID);
+            }
             texID = -1;
             enabled = false;
         }
@@ -0,0 +1,314 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * Packs many small textures into a few large pages so they can share one OpenGL texture and therefore one draw call.<br>
+ * Textures added to the atlas stay inactive until <code>pack()</code> is called. Packing uses a skyline bottom-left
+ * heuristic; every texture is surrounded by <code>padding</code> pixels which are either left transparent or,
+ * if <code>bleed</code> is set, filled with the outermost pixels of the texture to prevent sampling seams.
+ * Already packed pages keep their content, later calls to <code>pack()</code> fill up the remaining space.
+ *
+ * @author nZeloT
+ */
+public class TextureAtlas {
+
+    private final @Getter String group;
+    private final @Getter int pageSize;
+    private final @Getter int padding;
+    private final @Getter boolean bleed;
+
+    private final List<Page> pages;
+    private final List<Entry> pending;
+
+    TextureAtlas(@NonNull String group, int pageSize, int padding, boolean bleed) {
+        if (pageSize <= 0 || padding < 0 || 2 * padding >= pageSize) {
+            Logger.log(TextureAtlas.class, "Invalid atlas dimensions for group " + group + ": page size " + pageSize + ", padding " + padding, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid atlas dimensions for group " + group + ": page size " + pageSize + ", padding " + padding);
+        }
+
+        this.group = group;
+        this.pageSize = pageSize;
+        this.padding = padding;
+        this.bleed = bleed;
+
+        this.pages = new ArrayList<>();
+        this.pending = new ArrayList<>();
+    }
+
+    /**
+     * queue a texture for the next <code>pack()</code>
+     *
+     * @param data the decoded image
+     * @return the handle of the texture; it becomes active once packed
+     */
+    Texture add(@NonNull TextureData data) {
+        int w = data.getWidth() + 2 * padding;
+        int h = data.getHeight() + 2 * padding;
+        if (w > pageSize || h > pageSize) {
+            Logger.log(TextureAtlas.class, "Texture of size " + data.getWidth() + "x" + data.getHeight() + " does not fit into the pages of atlas " + group, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Texture of size " + data.getWidth() + "x" + data.getHeight() + " does not fit into the pages of atlas " + group);
+        }
+
+        Texture region = new Texture(data.getWidth(), data.getHeight());
+        pending.add(new Entry(data, region));
+        return region;
+    }
+
+    /**
+     * packs all queued textures and uploads them to their pages
+     *
+     * @return the pages created by this call
+     */
+    List<Texture> pack() {
+        List<Texture> created = new ArrayList<>();
+        if (pending.isEmpty())
+            return created;
+
+        //placing the tall textures first keeps the skyline flat
+        pending.sort((a, b) -> {
+            int c = Integer.compare(b.data.getHeight(), a.data.getHeight());
+            return c != 0 ? c : Integer.compare(b.data.getWidth(), a.data.getWidth());
+        });
+
+        for (Entry e : pending) {
+            int w = e.data.getWidth() + 2 * padding;
+            int h = e.data.getHeight() + 2 * padding;
+
+            Page target = null;
+            int[] pos = null;
+            for (Page p : pages) {
+                pos = p.find(w, h);
+                if (pos != null) {
+                    target = p;
+                    break;
+                }
+            }
+
+            if (target == null) {
+                target = new Page(pageSize, new Texture(new TextureData(pageSize, pageSize, ByteBuffer.allocateDirect(4 * pageSize * pageSize))));
+                pages.add(target);
+                created.add(target.texture);
+                pos = target.find(w, h);
+            }
+
+            target.place(pos[0], pos[1], w, h);
+            upload(target.texture, e.data, pos[0], pos[1]);
+            e.region.assign(target.texture, pos[0] + padding, pos[1] + padding);
+        }
+
+        pending.clear();
+        return created;
+    }
+
+    private void upload(Texture page, TextureData data, int x, int y) {
+        int tw = data.getWidth();
+        int th = data.getHeight();
+        int w = tw + 2 * padding;
+        int h = th + 2 * padding;
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4 * w * h);
+        for (int row = 0; row < h; row++) {
+            int sy = row - padding;
+            boolean insideY = sy >= 0 && sy < th;
+
+            for (int col = 0; col < w; col++) {
+                int sx = col - padding;
+                boolean insideX = sx >= 0 && sx < tw;
+
+                if (insideX && insideY)
+                    buffer.putInt(data.getPixel(sx, sy));
+                else if (bleed)
+                    buffer.putInt(data.getPixel(Math.min(Math.max(sx, 0), tw - 1), Math.min(Math.max(sy, 0), th - 1)));
+                else
+                    buffer.putInt(0);
+            }
+        }
+        buffer.flip();
+
+        page.bind();
+        glTexSubImage2D(GL_TEXTURE_2D, 0, x, y, w, h, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
+    }
+
+    /**
+     * @return the number of pages in use
+     */
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * @param page the index of the page
+     * @return the fraction of the page covered by textures including their padding
+     */
+    public float getOccupancy(int page) {
+        Page p = pages.get(page);
+        return p.used / (float) (pageSize * pageSize);
+    }
+
+    /**
+     * logs the occupancy of every page, useful for tuning page size and padding
+     */
+    public void dumpOccupancy() {
+        Logger.log(TextureAtlas.class, "Atlas " + group + ": " + pages.size() + " page(s) of " + pageSize + "x" + pageSize
+                + ", padding " + padding + (bleed ? " with bleed" : ""), Logger.LEVEL.INFO);
+
+        for (int i = 0; i < pages.size(); i++) {
+            Page p = pages.get(i);
+            Logger.log(TextureAtlas.class, "  page " + i + ": " + p.count + " texture(s), "
+                    + String.format("%.1f", getOccupancy(i) * 100) + "% used, skyline at " + p.top() + "/" + pageSize, Logger.LEVEL.INFO);
+        }
+    }
+
+    private static class Entry {
+        private final TextureData data;
+        private final Texture region;
+
+        private Entry(TextureData data, Texture region) {
+            this.data = data;
+            this.region = region;
+        }
+    }
+
+    //a skyline bin: each segment (x[i], y[i], width[i]) is the lowest free row above the columns it covers
+    private static class Page {
+        private final int size;
+        private final Texture texture;
+
+        private final List<int[]> skyline;
+
+        private long used;
+        private int count;
+
+        private Page(int size, Texture texture) {
+            this.size = size;
+            this.texture = texture;
+
+            this.skyline = new ArrayList<>();
+            this.skyline.add(new int[]{0, 0, size});
+        }
+
+        //bottom-left: choose the position with the lowest top edge, ties go to the narrower segment
+        private int[] find(int w, int h) {
+            int bestTop = Integer.MAX_VALUE;
+            int bestWidth = Integer.MAX_VALUE;
+            int[] best = null;
+
+            for (int i = 0; i < skyline.size(); i++) {
+                int x = skyline.get(i)[0];
+                int y = fit(i, w, h);
+
+                if (y >= 0 && (y + h < bestTop || (y + h == bestTop && skyline.get(i)[2] < bestWidth))) {
+                    bestTop = y + h;
+                    bestWidth = skyline.get(i)[2];
+                    best = new int[]{x, y};
+                }
+            }
+
+            return best;
+        }
+
+        //the y position of a rectangle starting at segment i or -1 if it does not fit
+        private int fit(int i, int w, int h) {
+            int x = skyline.get(i)[0];
+            if (x + w > size)
+                return -1;
+
+            int y = 0;
+            int remaining = w;
+            while (remaining > 0) {
+                int[] s = skyline.get(i);
+                y = Math.max(y, s[1]);
+                if (y + h > size)
+                    return -1;
+
+                remaining -= s[2];
+                i++;
+            }
+
+            return y;
+        }
+
+        private void place(int x, int y, int w, int h) {
+            int index = 0;
+            while (skyline.get(index)[0] != x)
+                index++;
+
+            skyline.add(index, new int[]{x, y + h, w});
+
+            //cut away the segments now lying below the new one
+            for (int i = index + 1; i < skyline.size(); i++) {
+                int[] prev = skyline.get(i - 1);
+                int[] s = skyline.get(i);
+                int end = prev[0] + prev[2];
+
+                if (s[0] >= end)
+                    break;
+
+                int shrink = end - s[0];
+                s[0] += shrink;
+                s[2] -= shrink;
+
+                if (s[2] <= 0) {
+                    skyline.remove(i);
+                    i--;
+                } else {
+                    break;
+                }
+            }
+
+            //merge neighbours of the same height
+            for (int i = 0; i < skyline.size() - 1; i++) {
+                int[] s = skyline.get(i);
+                int[] n = skyline.get(i + 1);
+                if (s[1] == n[1]) {
+                    s[2] += n[2];
+                    skyline.remove(i + 1);
+                    i--;
+                }
+            }
+
+            used += (long) w * h;
+            count++;
+        }
+
+        private int top() {
+            int top = 0;
+            for (int[] s : skyline)
+                top = Math.max(top, s[1]);
+            return top;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import lombok.Getter;
+import lombok.NonNull;
+import third.party.PNGDecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Decoded RGBA pixels of an image, not yet uploaded to OpenGL.<br>
+ * The first row of the buffer is the first row of the image file.
+ *
+ * @author nZeloT
+ */
+public final class TextureData {
+
+    private final @Getter int width, height;
+    private final ByteBuffer pixels;
+
+    TextureData(int width, int height, @NonNull ByteBuffer pixels) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * the data is never modified after decoding and may be shared between threads and games
+     *
+     * @return a view of the pixels with a position and limit of its own
+     */
+    public ByteBuffer getPixels() {
+        return pixels.duplicate();
+    }
+
+    /**
+     * decodes a PNG image into RGBA pixels
+     *
+     * @param in the stream to read the image from
+     * @return the decoded image
+     * @throws IOException if the stream could not be read or does not contain a PNG
+     */
+    public static TextureData decode(@NonNull InputStream in) throws IOException {
+        PNGDecoder decoder = new PNGDecoder(in);
+        int width = decoder.getWidth();
+        int height = decoder.getHeight();
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4 * width * height);
+        decoder.decode(buffer, 4 * width, PNGDecoder.Format.RGBA);
+        buffer.flip();
+
+        return new TextureData(width, height, buffer);
+    }
+
+    /**
+     * @param x the column of the pixel
+     * @param y the row of the pixel
+     * @return the RGBA value of the pixel packed into an int in memory order
+     */
+    int getPixel(int x, int y) {
+        return pixels.getInt((y * width + x) << 2);
+    }
+}
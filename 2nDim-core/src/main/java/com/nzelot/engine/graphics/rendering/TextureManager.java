@@ -25,24 +25,37 @@
 package com.nzelot.engine.graphics.rendering;
 
 import com.nzelot.engine.definition.Manager;
-import com.nzelot.engine.utils.FileUtils;
-import com.nzelot.engine.utils.ResourceUtils;
 import com.nzelot.engine.utils.logging.Logger;
 import lombok.Getter;
 import lombok.NonNull;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author nZeloT
  */
 public class TextureManager extends Manager<Texture> {
 
-    public static final TextureManager instance = new TextureManager();
+    /**
+     * @return the instance of the engine context bound to the calling thread
+     */
+    public static TextureManager current() {
+        return EngineContext.current().getTextureManager();
+    }
+
+    private static final String PAGE_KEY = "com.nzelot.2nDim.atlas.";
+
+    private Map<String, TextureAtlas> atlases;
 
-    //prevent further instantiation
-    private TextureManager(){
+    //created by the EngineContext
+    TextureManager(GLCommandQueue commands){
+        super(commands);
+        atlases = new ConcurrentHashMap<>();
     }
 
     public Texture get(STANDARD std){
@@ -55,8 +68,71 @@ public class TextureManager extends Manager<Texture> {
             throw new IllegalArgumentException("Tried to store already stored Texture with key: " + key);
         }
 
-        Texture t = new Texture(FileUtils.getInputStream(texFile));
-        objects.put(key, t);
+        if (isHeadless())
+            return null;
+
+        TextureData data = AssetCache.fileImage(texFile);
+        Texture t = getCommands().invoke(() -> new Texture(data));
+        if (!store(key, t)) {
+            Logger.log(VertexArrayManager.class, "Tried to store already stored Texture with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored Texture with key: " + key);
+        }
+
+        return t;
+    }
+
+    /**
+     * load a texture without waiting for it. The image is decoded on a worker, the upload happens on the thread
+     * owning the GL context.
+     *
+     * @param key     the key of the texture
+     * @param texFile the PNG image
+     * @return the future texture; <code>null</code> if headless
+     */
+    public CompletableFuture<Texture> createAsync(@NonNull String key, @NonNull String texFile){
+        if (isHeadless())
+            return CompletableFuture.completedFuture(null);
+
+        return CompletableFuture.supplyAsync(() -> AssetCache.fileImage(texFile))
+                .thenCompose(data -> getCommands().submit(() -> register(key, data)));
+    }
+
+    /**
+     * store a texture showing <code>STANDARD.NOT_FOUND</code> until its pixels arrive through <code>Texture.replace</code>
+     *
+     * @param key the key of the texture
+     * @return the placeholder; <code>null</code> if headless
+     */
+    Texture createPlaceholder(@NonNull String key){
+        if (objects.containsKey(key)) {
+            Logger.log(TextureManager.class, "Tried to store already stored Texture with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored Texture with key: " + key);
+        }
+
+        if (isHeadless())
+            return null;
+
+        Texture t = new Texture(get(STANDARD.NOT_FOUND));
+        if (!store(key, t)) {
+            Logger.log(TextureManager.class, "Tried to store already stored Texture with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored Texture with key: " + key);
+        }
+
+        return t;
+    }
+
+    //upload decoded pixels and store the texture; runs on the thread owning the GL context
+    private Texture register(String key, TextureData data){
+        if (objects.containsKey(key)) {
+            Logger.log(TextureManager.class, "Tried to store already stored Texture with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored Texture with key: " + key);
+        }
+
+        Texture t = new Texture(data);
+        if (!store(key, t)) {
+            Logger.log(TextureManager.class, "Tried to store already stored Texture with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored Texture with key: " + key);
+        }
 
         return t;
     }
@@ -67,12 +143,138 @@ public class TextureManager extends Manager<Texture> {
             throw new IllegalArgumentException("Tried to store already stored Texture with key: " + key);
         }
 
-        Texture t = new Texture(texFile);
-        objects.put(key, t);
+        if (isHeadless())
+            return null;
+
+        TextureData data = decode(key, texFile);
+        Texture t = getCommands().invoke(() -> new Texture(data));
+        if (!store(key, t)) {
+            Logger.log(VertexArrayManager.class, "Tried to store already stored Texture with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored Texture with key: " + key);
+        }
 
         return t;
     }
 
+    /**
+     * creates a new atlas group textures can be registered under
+     *
+     * @param group    the name of the group
+     * @param pageSize the width and height of the pages in pixels
+     * @param padding  the free border around every texture in pixels
+     * @param bleed    whether to fill the border with the edge pixels of the texture
+     * @return the new atlas
+     */
+    public TextureAtlas createAtlas(@NonNull String group, int pageSize, int padding, boolean bleed){
+        TextureAtlas atlas = new TextureAtlas(group, pageSize, padding, bleed);
+
+        if (atlases.putIfAbsent(group, atlas) != null) {
+            Logger.log(TextureManager.class, "Tried to create already existing atlas group: " + group, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to create already existing atlas group: " + group);
+        }
+
+        return atlas;
+    }
+
+    public TextureAtlas getAtlas(@NonNull String group){
+        TextureAtlas atlas = atlases.get(group);
+
+        if (atlas == null) {
+            Logger.log(TextureManager.class, "Tried to access non existent atlas group: " + group, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to access non existent atlas group: " + group);
+        }
+
+        return atlas;
+    }
+
+    public Texture create(@NonNull String key, @NonNull String texFile, @NonNull String group){
+        if (objects.containsKey(key)) {
+            Logger.log(TextureManager.class, "Tried to store already stored Texture with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored Texture with key: " + key);
+        }
+
+        TextureAtlas atlas = getAtlas(group);
+
+        if (isHeadless())
+            return null;
+
+        TextureData data = AssetCache.fileImage(texFile);
+        //the atlas is only touched by the thread owning the GL context
+        Texture t = getCommands().invoke(() -> atlas.add(data));
+        if (!store(key, t)) {
+            Logger.log(TextureManager.class, "Tried to store already stored Texture with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored Texture with key: " + key);
+        }
+
+        return t;
+    }
+
+    /**
+     * registers a texture under an atlas group. The returned texture is inactive until <code>packAtlas(group)</code>
+     * placed it on a page; afterwards it covers its sub-rectangle of the page.
+     *
+     * @param key     the key of the texture
+     * @param texFile the PNG image
+     * @param group   the atlas group
+     * @return the texture handle
+     */
+    public Texture create(@NonNull String key, @NonNull InputStream texFile, @NonNull String group){
+        if (objects.containsKey(key)) {
+            Logger.log(TextureManager.class, "Tried to store already stored Texture with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored Texture with key: " + key);
+        }
+
+        TextureAtlas atlas = getAtlas(group);
+
+        if (isHeadless())
+            return null;
+
+        TextureData data = decode(key, texFile);
+        Texture t = getCommands().invoke(() -> atlas.add(data));
+        if (!store(key, t)) {
+            Logger.log(TextureManager.class, "Tried to store already stored Texture with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored Texture with key: " + key);
+        }
+
+        return t;
+    }
+
+    /**
+     * packs all textures registered under the group since the last call and uploads them
+     *
+     * @param group the atlas group
+     */
+    public void packAtlas(@NonNull String group){
+        TextureAtlas atlas = getAtlas(group);
+
+        if (isHeadless())
+            return;
+
+        getCommands().invoke(() -> {
+            int first = atlas.getPageCount();
+            List<Texture> pages = atlas.pack();
+            for (int i = 0; i < pages.size(); i++) {
+                //the pages are managed like every other texture so exit() deletes them
+                objects.put(PAGE_KEY + group + "." + (first + i), pages.get(i));
+            }
+        });
+    }
+
+    private static TextureData decode(String key, InputStream texFile){
+        try {
+            return TextureData.decode(texFile);
+        } catch (IOException e) {
+            Logger.log(TextureManager.class, "Could not decode Texture with key: " + key + "; " + e.getMessage(), Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Could not decode Texture with key: " + key, e);
+        }
+    }
+
+    @Override
+    public void exit() {
+        super.exit();
+        atlases.clear();
+    }
+
     @Override
     protected void initSTD(Map<String, Texture> map) {
         //load all the standard shader
@@ -80,7 +282,7 @@ public class TextureManager extends Manager<Texture> {
 
         STANDARD[] standards = STANDARD.values();
         for (STANDARD standard : standards) {
-            t = new Texture(ResourceUtils.getResourceStream(standard.getFileName()));
+            t = new Texture(AssetCache.resourceImage(standard.getFileName()));
 
             objects.put(standard.getKey(), t);
         }
@@ -0,0 +1,204 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import org.lwjgl.BufferUtils;
+
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL20.*;
+
+/**
+ * A resolved handle to a uniform of a <code>Shader</code>. Obtain it once via <code>Shader.uniform(String)</code>
+ * and keep it around to avoid looking up the location on every upload.
+ * <p>
+ * Every handle keeps a shadow copy of the value the program currently holds. Uploads of an unchanged value are
+ * skipped entirely and don't even bind the program. Both are counted by the <code>ShaderManager</code> of the context.
+ *
+ * @author nZeloT
+ */
+public class Uniform {
+
+    private final @Getter Shader shader;
+    private final @Getter String name;
+    private final @Getter int location;
+
+    //the last uploaded value; valid is false until the first upload
+    private final float[] shadow;
+    private int shadowInt;
+    private boolean valid;
+
+    private FloatBuffer buffer;
+
+    // only visible within the package; use Shader.uniform(String)
+    Uniform(Shader shader, String name, int location) {
+        this.shader = shader;
+        this.name = name;
+        this.location = location;
+        this.shadow = new float[16];
+        this.valid = false;
+    }
+
+    /**
+     * push a new value to a <code>uniform int</code> or <code>uniform sampler</code>
+     *
+     * @param value the new value
+     */
+    public void set(int value) {
+        if (valid && shadowInt == value) {
+            shader.manager.countSkippedUpload();
+            return;
+        }
+
+        if (upload()) {
+            glUniform1i(location, value);
+            shadowInt = value;
+        }
+    }
+
+    /**
+     * push a new value to a <code>uniform float</code>
+     *
+     * @param value the new value
+     */
+    public void set(float value) {
+        if (valid && shadow[0] == value) {
+            shader.manager.countSkippedUpload();
+            return;
+        }
+
+        if (upload()) {
+            glUniform1f(location, value);
+            shadow[0] = value;
+        }
+    }
+
+    /**
+     * push new values to a <code>uniform vec2</code>
+     */
+    public void set(float x, float y) {
+        if (valid && shadow[0] == x && shadow[1] == y) {
+            shader.manager.countSkippedUpload();
+            return;
+        }
+
+        if (upload()) {
+            glUniform2f(location, x, y);
+            shadow[0] = x;
+            shadow[1] = y;
+        }
+    }
+
+    /**
+     * push new values to a <code>uniform vec3</code>
+     *
+     * @param vector the new values
+     */
+    public void set(@NonNull Vector3f vector) {
+        if (valid && shadow[0] == vector.x && shadow[1] == vector.y && shadow[2] == vector.z) {
+            shader.manager.countSkippedUpload();
+            return;
+        }
+
+        if (upload()) {
+            glUniform3f(location, vector.x, vector.y, vector.z);
+            shadow[0] = vector.x;
+            shadow[1] = vector.y;
+            shadow[2] = vector.z;
+        }
+    }
+
+    /**
+     * push new values to a <code>uniform vec4</code>
+     *
+     * @param vector the new values
+     */
+    public void set(@NonNull Vector4f vector) {
+        set(vector.x, vector.y, vector.z, vector.w);
+    }
+
+    /**
+     * push new values to a <code>uniform vec4</code>
+     */
+    public void set(float x, float y, float z, float w) {
+        if (valid && shadow[0] == x && shadow[1] == y && shadow[2] == z && shadow[3] == w) {
+            shader.manager.countSkippedUpload();
+            return;
+        }
+
+        if (upload()) {
+            glUniform4f(location, x, y, z, w);
+            shadow[0] = x;
+            shadow[1] = y;
+            shadow[2] = z;
+            shadow[3] = w;
+        }
+    }
+
+    /**
+     * push new values to a <code>uniform mat4</code>
+     *
+     * @param m the new values
+     */
+    public void set(@NonNull Matrix4f m) {
+        if (valid
+                && shadow[0] == m.m00 && shadow[1] == m.m01 && shadow[2] == m.m02 && shadow[3] == m.m03
+                && shadow[4] == m.m10 && shadow[5] == m.m11 && shadow[6] == m.m12 && shadow[7] == m.m13
+                && shadow[8] == m.m20 && shadow[9] == m.m21 && shadow[10] == m.m22 && shadow[11] == m.m23
+                && shadow[12] == m.m30 && shadow[13] == m.m31 && shadow[14] == m.m32 && shadow[15] == m.m33) {
+            shader.manager.countSkippedUpload();
+            return;
+        }
+
+        if (upload()) {
+            if (buffer == null)
+                buffer = BufferUtils.createFloatBuffer(16);
+
+            m.get(0, buffer);
+            glUniformMatrix4fv(location, false, buffer);
+
+            shadow[0] = m.m00;  shadow[1] = m.m01;  shadow[2] = m.m02;  shadow[3] = m.m03;
+            shadow[4] = m.m10;  shadow[5] = m.m11;  shadow[6] = m.m12;  shadow[7] = m.m13;
+            shadow[8] = m.m20;  shadow[9] = m.m21;  shadow[10] = m.m22; shadow[11] = m.m23;
+            shadow[12] = m.m30; shadow[13] = m.m31; shadow[14] = m.m32; shadow[15] = m.m33;
+        }
+    }
+
+    //bind the program for an upload; false if the program is not usable anymore
+    private boolean upload() {
+        if (!shader.isActive())
+            return false;
+
+        shader.bind();
+        shader.manager.countIssuedUpload();
+        valid = true;
+        return true;
+    }
+}
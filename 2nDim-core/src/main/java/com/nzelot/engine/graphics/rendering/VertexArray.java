@@ -26,22 +26,42 @@ package com.nzelot.engine.graphics.rendering;
 
 import com.nzelot.engine.definition.ManagedObject;
 import com.nzelot.engine.utils.BufferUtils;
+import com.nzelot.engine.utils.logging.Logger;
 import lombok.NonNull;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL33.*;
 
 /**
  * taken from https://github.com/TheCherno/Flappy/blob/master/src/com/thecherno/flappy/graphics/VertexArray.java
+ * <p>
+ * The vertices live interleaved in a single buffer described by a <code>VertexFormat</code>.
+ * Indices may be unsigned bytes, shorts or ints depending on the type of the index buffer.
  *
  * @author TheCherno
  */
 public class VertexArray extends ManagedObject {
 
-    private int vao, vbo, ibo, tbo;
+    private int vao, vbo, ibo;
     private int count;
+    private int indexType;
+
+    //per instance attributes; null if instancing is not enabled
+    private DynamicVertexBuffer instances;
+    private int instanceSize;
+    private int firstInstanceAttrib;
+    private int[] instanceLayout;
+    private int pointedInstance;
 
     private boolean enabled;
 
@@ -51,30 +71,51 @@ public class VertexArray extends ManagedObject {
     //}
 
     VertexArray(@NonNull float[] vertices, @NonNull byte[] indices, @NonNull float[] textureCoordinates) {
-        count = indices.length;
+        this(VertexFormat.POSITION_TEXCOORD,
+                VertexFormat.POSITION_TEXCOORD.pack(vertices, textureCoordinates),
+                BufferUtils.createByteBuffer(indices));
+    }
 
+    /**
+     * @param format   the layout of the vertices
+     * @param vertices the interleaved vertices from <code>position()</code> to <code>limit()</code>
+     * @param indices  a <code>ByteBuffer</code>, <code>ShortBuffer</code> or <code>IntBuffer</code> of unsigned indices;
+     *                 null to draw the vertices in order
+     */
+    VertexArray(@NonNull VertexFormat format, @NonNull ByteBuffer vertices, Buffer indices) {
         vao = glGenVertexArrays();
         glBindVertexArray(vao);
 
         vbo = glGenBuffers();
         glBindBuffer(GL_ARRAY_BUFFER, vbo);
-        glBufferData(GL_ARRAY_BUFFER, BufferUtils.createFloatBuffer(vertices), GL_STATIC_DRAW);
-        glVertexAttribPointer(Shader.VERTEX_ATTRIB, 3, GL_FLOAT, false, 0, 0);
-        glEnableVertexAttribArray(Shader.VERTEX_ATTRIB);
+        glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
+        format.apply(0);
 
-        tbo = glGenBuffers();
-        glBindBuffer(GL_ARRAY_BUFFER, tbo);
-        glBufferData(GL_ARRAY_BUFFER, BufferUtils.createFloatBuffer(textureCoordinates), GL_STATIC_DRAW);
-        glVertexAttribPointer(Shader.TCOORD_ATTRIB, 2, GL_FLOAT, false, 0, 0);
-        glEnableVertexAttribArray(Shader.TCOORD_ATTRIB);
+        if (indices != null) {
+            count = indices.remaining();
 
-        ibo = glGenBuffers();
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo);
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, BufferUtils.createByteBuffer(indices), GL_STATIC_DRAW);
+            ibo = glGenBuffers();
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo);
+            if (indices instanceof ByteBuffer) {
+                glBufferData(GL_ELEMENT_ARRAY_BUFFER, (ByteBuffer) indices, GL_STATIC_DRAW);
+                indexType = GL_UNSIGNED_BYTE;
+            } else if (indices instanceof ShortBuffer) {
+                glBufferData(GL_ELEMENT_ARRAY_BUFFER, (ShortBuffer) indices, GL_STATIC_DRAW);
+                indexType = GL_UNSIGNED_SHORT;
+            } else if (indices instanceof IntBuffer) {
+                glBufferData(GL_ELEMENT_ARRAY_BUFFER, (IntBuffer) indices, GL_STATIC_DRAW);
+                indexType = GL_UNSIGNED_INT;
+            } else {
+                Logger.log(VertexArray.class, "Unsupported index buffer type: " + indices.getClass().getSimpleName(), Logger.LEVEL.ERROR);
+                throw new IllegalArgumentException("Unsupported index buffer type: " + indices.getClass().getSimpleName());
+            }
+        } else {
+            count = vertices.remaining() / format.getStride();
+        }
 
+        glBindVertexArray(0);
         glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
         glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glBindVertexArray(0);
 
         enabled = true;
     }
@@ -99,20 +140,143 @@ public class VertexArray extends ManagedObject {
     public void render(int glBeginMode){
         if(enabled) {
             if (ibo > 0)
-                glDrawElements(glBeginMode, count, GL_UNSIGNED_BYTE, 0);
+                glDrawElements(glBeginMode, count, indexType, 0);
             else
                 glDrawArrays(glBeginMode, 0, count);
         }
     }
 
+    /**
+     * replace the vertices, e.g. after the geometry was edited. The format and the indices stay the same.
+     *
+     * @param vertices the interleaved vertices from <code>position()</code> to <code>limit()</code>
+     * @param count    the number of indices to draw; the number of vertices if there is no index buffer
+     */
+    public void updateVertices(@NonNull ByteBuffer vertices, int count) {
+        if (enabled) {
+            glBindBuffer(GL_ARRAY_BUFFER, vbo);
+            glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+            this.count = count;
+        }
+    }
+
+    /**
+     * add a streaming buffer holding per instance attributes. The attributes are interleaved floats and get consecutive
+     * attribute indices starting at <code>firstAttrib</code>. Each attribute advances once per instance.
+     *
+     * @param maxInstances   the number of instances a single frame may use
+     * @param firstAttrib    the attribute index of the first per instance attribute
+     * @param attributeSizes the number of floats of every attribute
+     */
+    public void enableInstancing(int maxInstances, int firstAttrib, @NonNull int... attributeSizes) {
+        if (enabled && instances == null) {
+            int size = 0;
+            for (int s : attributeSizes)
+                size += s;
+            instanceSize = size;
+            firstInstanceAttrib = firstAttrib;
+            instanceLayout = attributeSizes.clone();
+
+            instances = new DynamicVertexBuffer(size << 2, maxInstances);
+
+            glBindVertexArray(vao);
+            pointInstances(0);
+            for (int i = 0; i < attributeSizes.length; i++) {
+                glVertexAttribDivisor(firstAttrib + i, 1);
+                glEnableVertexAttribArray(firstAttrib + i);
+            }
+            glBindVertexArray(0);
+        }
+    }
+
+    /**
+     * @return the buffer to write the per instance attributes into; draw them with <code>renderInstanced()</code>
+     */
+    public DynamicVertexBuffer getInstances() {
+        checkInstancing();
+        return instances;
+    }
+
+    /**
+     * replace the per instance attributes
+     *
+     * @param data the interleaved attributes from <code>position()</code> to <code>limit()</code>
+     */
+    public void updateInstances(@NonNull FloatBuffer data) {
+        if (enabled) {
+            checkInstancing();
+            instances.begin(data.remaining() / instanceSize).put(data).end();
+        }
+    }
+
+    public void renderInstanced(int instances) {
+        renderInstanced(GL_TRIANGLES, instances);
+    }
+
+    /**
+     * draw the instances last written to the instance buffer. The vertex array has to be bound.
+     */
+    public void renderInstanced(int glBeginMode, int instances) {
+        if (enabled) {
+            checkInstancing();
+
+            //without base instance support the attributes have to point at the current range of the ring buffer
+            if (this.instances.getFirst() != pointedInstance)
+                pointInstances(this.instances.getFirst());
+
+            if (ibo > 0)
+                glDrawElementsInstanced(glBeginMode, count, indexType, 0, instances);
+            else
+                glDrawArraysInstanced(glBeginMode, 0, count, instances);
+        }
+    }
+
+    /**
+     * @return the number of floats per instance; 0 if instancing is not enabled
+     */
+    public int getInstanceSize() {
+        return instanceSize;
+    }
+
+    private void pointInstances(int first) {
+        instances.bind();
+
+        int offset = first * instanceSize;
+        for (int i = 0; i < instanceLayout.length; i++) {
+            glVertexAttribPointer(firstInstanceAttrib + i, instanceLayout[i], GL_FLOAT, false, instanceSize << 2, (long) offset << 2);
+            offset += instanceLayout[i];
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        pointedInstance = first;
+    }
+
+    private void checkInstancing() {
+        if (instances == null) {
+            Logger.log(VertexArray.class, "Tried to use instancing on a VertexArray without enableInstancing()!", Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Tried to use instancing on a VertexArray without enableInstancing()!");
+        }
+    }
+
+    /**
+     * @return the OpenGL ID of the vertex array object
+     */
+    public int getID() {
+        return vao;
+    }
+
     protected void delete(){
         if(enabled) {
             enabled = false;
             VertexArray.unbind();
             glDeleteVertexArrays(vao);
             glDeleteBuffers(vbo);
-            glDeleteBuffers(ibo);
-            glDeleteBuffers(tbo);
+            if (ibo > 0)
+                glDeleteBuffers(ibo);
+            if (instances != null)
+                instances.delete();
         }
     }
 
@@ -25,11 +25,15 @@
 package com.nzelot.engine.graphics.rendering;
 
 import com.nzelot.engine.definition.Manager;
+import com.nzelot.engine.utils.BufferUtils;
 import com.nzelot.engine.utils.logging.Logger;
 import lombok.Getter;
 import lombok.NonNull;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author nZeloT
@@ -37,11 +41,16 @@ import java.util.Map;
 //doc
 public class VertexArrayManager extends Manager<VertexArray> {
 
-    //fixme this is only temporary
-    public static final VertexArrayManager instance = new VertexArrayManager();
+    /**
+     * @return the instance of the engine context bound to the calling thread
+     */
+    public static VertexArrayManager current() {
+        return EngineContext.current().getVertexArrayManager();
+    }
 
-    //prevent instantiation
-    private VertexArrayManager() {
+    //created by the EngineContext
+    VertexArrayManager(GLCommandQueue commands) {
+        super(commands);
     }
 
 
@@ -58,12 +67,73 @@ public class VertexArrayManager extends Manager<VertexArray> {
             throw new IllegalArgumentException("Tried to store already stored VertexArray with key: " + key);
         }
 
-        VertexArray va = new VertexArray(vertices, indices, textureCoordinates);
-        objects.put(key, va);
+        if (isHeadless())
+            return null;
+
+        VertexArray va = getCommands().invoke(() -> new VertexArray(vertices, indices, textureCoordinates));
+        if (!store(key, va)) {
+            Logger.log(VertexArrayManager.class, "Tried to store already stored VertexArray with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored VertexArray with key: " + key);
+        }
+
+        return va;
+    }
+
+    /**
+     * create a vertex array from interleaved vertices
+     *
+     * @param key      the key of the vertex array
+     * @param format   the layout of the vertices
+     * @param vertices the interleaved vertices from <code>position()</code> to <code>limit()</code>
+     * @param indices  a <code>ByteBuffer</code>, <code>ShortBuffer</code> or <code>IntBuffer</code> of unsigned indices;
+     *                 null to draw the vertices in order
+     * @return the new vertex array
+     */
+    public VertexArray create(@NonNull String key,
+                              @NonNull VertexFormat format,
+                              @NonNull ByteBuffer vertices,
+                              Buffer indices){
+        if (objects.containsKey(key)) {
+            Logger.log(VertexArrayManager.class, "Tried to store already stored VertexArray with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored VertexArray with key: " + key);
+        }
+
+        if (isHeadless())
+            return null;
+
+        VertexArray va = getCommands().invoke(() -> new VertexArray(format, vertices, indices));
+        if (!store(key, va)) {
+            Logger.log(VertexArrayManager.class, "Tried to store already stored VertexArray with key: " + key, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tried to store already stored VertexArray with key: " + key);
+        }
 
         return va;
     }
 
+    /**
+     * create a vertex array from interleaved vertices without waiting for it; the buffers get uploaded on the thread
+     * owning the GL context. The buffers must not be changed until the future completed.
+     *
+     * @return the future vertex array; <code>null</code> if headless
+     * @see #create(String, VertexFormat, ByteBuffer, Buffer)
+     */
+    public CompletableFuture<VertexArray> createAsync(@NonNull String key,
+                                                      @NonNull VertexFormat format,
+                                                      @NonNull ByteBuffer vertices,
+                                                      Buffer indices){
+        return getCommands().submit(() -> create(key, format, vertices, indices));
+    }
+
+    /**
+     * create a vertex array from interleaved vertices using the narrowest index type possible
+     */
+    public VertexArray create(@NonNull String key,
+                              @NonNull VertexFormat format,
+                              @NonNull ByteBuffer vertices,
+                              @NonNull int[] indices){
+        return create(key, format, vertices, BufferUtils.createIndexBuffer(indices, vertices.remaining() / format.getStride()));
+    }
+
     /**
      * initialize the <code>ShaderManager</code>. This will be called from within the engine.
      */
@@ -73,7 +143,10 @@ public class VertexArrayManager extends Manager<VertexArray> {
 
             STANDARD[] standards = STANDARD.values();
             for (STANDARD standard : standards) {
-                s = new VertexArray(standard.getVert(), standard.getInd(), standard.getTcs());
+                s = new VertexArray(VertexFormat.POSITION_TEXCOORD,
+                        VertexFormat.POSITION_TEXCOORD.pack(standard.getVert(), standard.getTcs()),
+                        BufferUtils.createIndexBuffer(standard.getInd(), standard.getVert().length / 3));
+                s.enableInstancing(InstanceRenderer.MAX_INSTANCES, Shader.INSTANCE_XFORM_ATTRIB, InstanceRenderer.INSTANCE_LAYOUT);
 
                 objects.put(standard.getKey(), s);
             }
@@ -90,7 +163,7 @@ public class VertexArrayManager extends Manager<VertexArray> {
                         0.5f, 0.5f, 0.0f,   // |     |
                         -0.5f, 0.5f, 0.0f   // 0-----1
                 },
-                new byte[]{
+                new int[]{
                         3, 2, 1,
                         1, 0, 3
                 },
@@ -111,10 +184,10 @@ public class VertexArrayManager extends Manager<VertexArray> {
 
         private @Getter String key;
         private @Getter float[] vert;
-        private @Getter byte[] ind;
+        private @Getter int[] ind;
         private @Getter float[] tcs;
 
-        STANDARD(String key, float[] vert, byte[] ind, float[] tcs) {
+        STANDARD(String key, float[] vert, int[] ind, float[] tcs) {
             this.key = key;
             this.vert = vert;
             this.ind = ind;
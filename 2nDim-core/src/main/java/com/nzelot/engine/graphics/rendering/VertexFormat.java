@@ -0,0 +1,226 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.rendering;
+
+import com.nzelot.engine.utils.BufferUtils;
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * Describes the layout of interleaved vertices: which attribute lives at which offset and how it is stored.<br>
+ * Every attribute starts at a multiple of four bytes. Integer types may be normalized, so e.g. a color can be stored
+ * in four unsigned bytes instead of four floats.
+ * <pre>
+ * VertexFormat f = new VertexFormat()
+ *      .attribute(Shader.VERTEX_ATTRIB, 2, VertexFormat.Type.FLOAT)
+ *      .attribute(Shader.TCOORD_ATTRIB, 2, VertexFormat.Type.HALF_FLOAT)
+ *      .attribute(Shader.COLOR_ATTRIB, 4, VertexFormat.Type.UNSIGNED_BYTE, true);
+ * </pre>
+ *
+ * @author nZeloT
+ */
+public class VertexFormat {
+
+    /** a vec3 position and a vec2 texture coordinate, the layout of the standard geometry */
+    public static final VertexFormat POSITION_TEXCOORD = new VertexFormat()
+            .attribute(Shader.VERTEX_ATTRIB, 3, Type.FLOAT)
+            .attribute(Shader.TCOORD_ATTRIB, 2, Type.FLOAT);
+
+    public enum Type {
+        FLOAT(GL_FLOAT, 4),
+        HALF_FLOAT(GL_HALF_FLOAT, 2),
+        BYTE(GL_BYTE, 1),
+        UNSIGNED_BYTE(GL_UNSIGNED_BYTE, 1),
+        SHORT(GL_SHORT, 2),
+        UNSIGNED_SHORT(GL_UNSIGNED_SHORT, 2),
+        INT(GL_INT, 4),
+        UNSIGNED_INT(GL_UNSIGNED_INT, 4);
+
+        private final @Getter int glType;
+        private final @Getter int bytes;
+
+        Type(int glType, int bytes) {
+            this.glType = glType;
+            this.bytes = bytes;
+        }
+    }
+
+    private final List<Attribute> attributes;
+    private @Getter int stride;
+
+    public VertexFormat() {
+        attributes = new ArrayList<>();
+        stride = 0;
+    }
+
+    public VertexFormat attribute(int index, int size, @NonNull Type type) {
+        return attribute(index, size, type, false);
+    }
+
+    /**
+     * append an attribute to the vertex
+     *
+     * @param index      the attribute location in the shader
+     * @param size       the number of components, 1 to 4
+     * @param type       how every component is stored
+     * @param normalized whether integer values are mapped to [0, 1] (unsigned) or [-1, 1] (signed)
+     * @return this format
+     */
+    public VertexFormat attribute(int index, int size, @NonNull Type type, boolean normalized) {
+        if (size < 1 || size > 4) {
+            Logger.log(VertexFormat.class, "Invalid attribute size: " + size, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid attribute size: " + size);
+        }
+
+        attributes.add(new Attribute(index, size, type, normalized, stride));
+        stride += align(size * type.getBytes());
+
+        return this;
+    }
+
+    /**
+     * @return the number of attributes
+     */
+    public int getAttributeCount() {
+        return attributes.size();
+    }
+
+    /**
+     * @param vertices the number of vertices
+     * @return a direct buffer large enough to hold the vertices
+     */
+    public ByteBuffer allocate(int vertices) {
+        return ByteBuffer.allocateDirect(vertices * stride).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * interleave separate attribute arrays into one buffer, converting the floats to the type of each attribute
+     *
+     * @param data one array per attribute in the order of the format, each holding <code>size</code> floats per vertex
+     * @return a buffer ready to be uploaded
+     */
+    public ByteBuffer pack(@NonNull float[]... data) {
+        if (data.length != attributes.size()) {
+            Logger.log(VertexFormat.class, "Expected " + attributes.size() + " attribute arrays but got " + data.length, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Expected " + attributes.size() + " attribute arrays but got " + data.length);
+        }
+
+        int vertices = data[0].length / attributes.get(0).size;
+        for (int a = 0; a < data.length; a++) {
+            if (data[a].length != vertices * attributes.get(a).size) {
+                Logger.log(VertexFormat.class, "Attribute array " + a + " does not match the vertex count " + vertices, Logger.LEVEL.ERROR);
+                throw new IllegalArgumentException("Attribute array " + a + " does not match the vertex count " + vertices);
+            }
+        }
+
+        ByteBuffer buffer = allocate(vertices);
+        for (int v = 0; v < vertices; v++) {
+            for (int a = 0; a < data.length; a++) {
+                Attribute attr = attributes.get(a);
+                buffer.position(v * stride + attr.offset);
+
+                for (int c = 0; c < attr.size; c++)
+                    put(buffer, attr, data[a][v * attr.size + c]);
+            }
+        }
+
+        buffer.position(0);
+        buffer.limit(vertices * stride);
+        return buffer;
+    }
+
+    /**
+     * set up the attribute pointers for the buffer currently bound to <code>GL_ARRAY_BUFFER</code>
+     *
+     * @param baseOffset the offset of the first vertex inside the buffer in bytes
+     */
+    void apply(long baseOffset) {
+        for (Attribute a : attributes) {
+            glVertexAttribPointer(a.index, a.size, a.type.getGlType(), a.normalized, stride, baseOffset + a.offset);
+            glEnableVertexAttribArray(a.index);
+        }
+    }
+
+    private static void put(ByteBuffer buffer, Attribute attr, float value) {
+        switch (attr.type) {
+            case FLOAT:
+                buffer.putFloat(value);
+                break;
+            case HALF_FLOAT:
+                buffer.putShort(BufferUtils.toHalfFloat(value));
+                break;
+            case BYTE:
+                buffer.put((byte) (attr.normalized ? Math.round(clamp(value, -1) * 127) : value));
+                break;
+            case UNSIGNED_BYTE:
+                buffer.put((byte) (attr.normalized ? Math.round(clamp(value, 0) * 255) : value));
+                break;
+            case SHORT:
+                buffer.putShort((short) (attr.normalized ? Math.round(clamp(value, -1) * 32767) : value));
+                break;
+            case UNSIGNED_SHORT:
+                buffer.putShort((short) (attr.normalized ? Math.round(clamp(value, 0) * 65535) : value));
+                break;
+            case INT:
+            case UNSIGNED_INT:
+                buffer.putInt((int) value);
+                break;
+        }
+    }
+
+    private static float clamp(float value, float min) {
+        return Math.max(min, Math.min(1, value));
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 3) & ~3;
+    }
+
+    private static class Attribute {
+        private final int index;
+        private final int size;
+        private final Type type;
+        private final boolean normalized;
+        private final int offset;
+
+        private Attribute(int index, int size, Type type, boolean normalized, int offset) {
+            this.index = index;
+            this.size = size;
+            this.type = type;
+            this.normalized = normalized;
+            this.offset = offset;
+        }
+    }
+}
@@ -50,8 +50,7 @@ public class AnimatedSprite extends Sprite {
         passed += delta;
         if(passed >= speed){
             passed = 0;
-            current = (current+1)%texCount;
-            changed = true;
+            setCurrent((getCurrent()+1)%texCount);
         }
     }
 }
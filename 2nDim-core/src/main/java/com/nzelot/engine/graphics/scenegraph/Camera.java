@@ -29,6 +29,9 @@ import com.nzelot.engine.graphics.rendering.FrameBufferManager;
 import com.nzelot.engine.graphics.rendering.Texture;
 import com.nzelot.engine.utils.logging.Logger;
 import lombok.Getter;
+import lombok.NonNull;
+import org.dyn4j.geometry.AABB;
+import org.dyn4j.geometry.Vector2;
 import org.joml.Matrix4f;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
@@ -56,6 +59,13 @@ public class Camera {
 
     private final Vector2f dummy;
 
+    //the visible area is rebuilt whenever the camera or the projection changed
+    private AABB visibleArea;
+    private boolean recalcVisibleArea;
+
+    //moved, rotated or zoomed since the last call of pollChanged()
+    private boolean changed;
+
     //doc
     public Camera(Vector3f position, int width, int height, float zoomLevel){
 
@@ -72,14 +82,17 @@ public class Camera {
 
         recalcCamera = true;
         recalcProjection = true;
+        recalcVisibleArea = true;
         recalcProjectionMat();
         recalcCameraMat();
 
         String key = "com.nzelot.engine.camera.";
         key += this.toString();
-        this.renderTarget = FrameBufferManager.instance.create(key, width, height);
+        this.renderTarget = FrameBufferManager.current().create(key, width, height);
 
-        Logger.log(Camera.class, "Created FBO with Id: " + key, Logger.LEVEL.INFO);
+        //headless there is nothing to render to
+        if (renderTarget != null)
+            Logger.log(Camera.class, "Created FBO with Id: " + key, Logger.LEVEL.INFO);
     }
 
     //doc
@@ -101,6 +114,8 @@ public class Camera {
     public void translate(float x, float y){
         position.add(x, y, 0);
         recalcCamera = true;
+        recalcVisibleArea = true;
+        changed = true;
     }
 
     //doc
@@ -115,12 +130,16 @@ public class Camera {
             this.rotation -= TWO_PI;
 
         recalcCamera = true;
+        recalcVisibleArea = true;
+        changed = true;
     }
 
     //doc
     public void setPosition(float x, float y){
         position.set(x, y, 0);
         recalcCamera = true;
+        recalcVisibleArea = true;
+        changed = true;
     }
 
     //doc
@@ -146,6 +165,8 @@ public class Camera {
 
         rotation = rad;
         recalcCamera = true;
+        recalcVisibleArea = true;
+        changed = true;
     }
 
     //doc
@@ -164,6 +185,8 @@ public class Camera {
         }
 
         recalcProjection = true;
+        recalcVisibleArea = true;
+        changed = true;
     }
 
     //doc
@@ -175,6 +198,8 @@ public class Camera {
 
         screenRation = (float)height / (float)width;
         recalcProjection = true;
+        recalcVisibleArea = true;
+        changed = true;
     }
 
     //doc
@@ -187,6 +212,17 @@ public class Camera {
 
         screenRation = ratio;
         recalcProjection = true;
+        recalcVisibleArea = true;
+        changed = true;
+    }
+
+    /**
+     * @return true if the camera moved, rotated or zoomed since the last call
+     */
+    boolean pollChanged(){
+        boolean c = changed;
+        changed = false;
+        return c;
     }
 
     //doc
@@ -201,6 +237,60 @@ public class Camera {
         return projectionMat;
     }
 
+    /**
+     * get the part of the world visible through the camera. The area is axis aligned and therefore covers a bit more
+     * than the actual view if the camera is rotated.
+     *
+     * @return the visible area in world coordinates
+     */
+    public AABB getVisibleArea(){
+        if(recalcVisibleArea){
+            //the inverse of the camera matrix applied to the view rectangle of the projection
+            double cos = Math.cos(rotation);
+            double sin = Math.sin(rotation);
+
+            double hx = zoomLevel;
+            double hy = zoomLevel * screenRation;
+
+            double ex = Math.abs(cos) * hx + Math.abs(sin) * hy;
+            double ey = Math.abs(sin) * hx + Math.abs(cos) * hy;
+
+            double cx = -(cos * position.x + sin * position.y);
+            double cy = sin * position.x - cos * position.y;
+
+            visibleArea = new AABB(cx - ex, cy - ey, cx + ex, cy + ey);
+            recalcVisibleArea = false;
+        }
+
+        return visibleArea;
+    }
+
+    /**
+     * convert a position on the screen into world coordinates
+     *
+     * @param screenX the x coordinate in pixels from the left
+     * @param screenY the y coordinate in pixels from the top
+     * @param width   the width of the screen in pixels
+     * @param height  the height of the screen in pixels
+     * @param dest    the vector to write the result to
+     * @return <code>dest</code>
+     */
+    public Vector2 screenToWorld(double screenX, double screenY, int width, int height, @NonNull Vector2 dest){
+        if(width <= 0 || height <= 0){
+            Logger.log(Camera.class, "Invalid screen size: " + width + "x" + height, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid screen size: " + width + "x" + height);
+        }
+
+        //from pixels to the view rectangle of the projection
+        double vx = (2 * screenX / width - 1) * zoomLevel - position.x;
+        double vy = (1 - 2 * screenY / height) * zoomLevel * screenRation - position.y;
+
+        //undo the rotation of the camera
+        double cos = Math.cos(rotation);
+        double sin = Math.sin(rotation);
+        return dest.set(cos * vx + sin * vy, -sin * vx + cos * vy);
+    }
+
     //doc
     public void makeActive(){
         renderTarget.bind();
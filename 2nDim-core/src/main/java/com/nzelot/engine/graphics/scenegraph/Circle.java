@@ -25,10 +25,14 @@
 package com.nzelot.engine.graphics.scenegraph;
 
 import com.nzelot.engine.graphics.rendering.Color;
+import com.nzelot.engine.graphics.rendering.QuadRenderer;
+import com.nzelot.engine.graphics.rendering.Shader;
 import com.nzelot.engine.graphics.rendering.ShaderManager;
+import com.nzelot.engine.graphics.rendering.Uniform;
 import com.nzelot.engine.graphics.rendering.VertexArrayManager;
 import lombok.NonNull;
 import org.joml.Matrix4f;
+import org.joml.Vector4f;
 
 /**
  * @author nZeloT
@@ -36,20 +40,23 @@ import org.joml.Matrix4f;
 //doc
 public class Circle extends GameObject {
 
-    private Color color;
+    private Uniform colUniform;
+
+    //the color is kept within the entity store; this only receives a copy
+    private final Vector4f rgba = new Vector4f();
 
     //doc
     public Circle(String name, double radius, @NonNull Color color) {
         super(name,
-                ShaderManager.instance.get(ShaderManager.STANDARD.CIRCLE),
-                VertexArrayManager.instance.get(VertexArrayManager.STANDARD.SQUARE));
+                ShaderManager.current().get(ShaderManager.STANDARD.CIRCLE),
+                VertexArrayManager.current().get(VertexArrayManager.STANDARD.SQUARE));
 
         //setup physics
         addFixture(new org.dyn4j.geometry.Circle(radius));
         setMass();
 
         //setup appearance
-        this.color = color;
+        setColor(color);
     }
 
     //doc
@@ -61,14 +68,52 @@ public class Circle extends GameObject {
     //doc
     @Override
     public void render(Matrix4f transformation) {
-        getShader().setUniform4f("col", color.asVector4f());
+        colUniform = resolve(colUniform, "col");
+        colUniform.set(getColor(rgba));
         super.render(transformation);
     }
 
+    //doc
+    @Override
+    protected RenderSnapshot.Draw record(Matrix4f transformation) {
+        RenderSnapshot.Draw geometry = super.record(transformation);
+        Shader shader = getShader();
+        Vector4f col = new Vector4f(getColor(rgba));
+
+        return () -> {
+            shader.uniform("col").set(col);
+            geometry.draw();
+        };
+    }
+
+    //doc
+    @Override
+    public boolean isTranslucent() {
+        return super.isTranslucent() || getColor(rgba).w < 1;
+    }
+
+    //doc
+    @Override
+    protected boolean batch(QuadRenderer batch, Matrix4f transformation) {
+        //a custom shader has to be rendered on its own
+        if (getShader() != ShaderManager.current().get(ShaderManager.STANDARD.CIRCLE))
+            return false;
+
+        batch.drawCircle(transformation, getColor(rgba));
+        return true;
+    }
+
+    @Override
+    void describeQuad(EntityStore store, int index) {
+        //a custom shader has to be rendered on its own
+        boolean standard = getShader() == ShaderManager.current().get(ShaderManager.STANDARD.CIRCLE);
+        store.describeQuad(index, standard ? EntityStore.QUAD_CIRCLE : EntityStore.QUAD_NONE, null, 0, 0, 0);
+    }
+
     //doc
     @Override
     protected void onAddToUniverse() {
-        getShader().setUniformMat4f("pr_matrix", getUniverse().getProjectionMat());
+        //NOP
     }
 
     //doc
@@ -25,20 +25,28 @@
 package com.nzelot.engine.graphics.scenegraph;
 
 import com.nzelot.engine.graphics.rendering.Color;
+import com.nzelot.engine.graphics.rendering.QuadRenderer;
+import com.nzelot.engine.graphics.rendering.Shader;
+import com.nzelot.engine.graphics.rendering.ShaderManager;
+import com.nzelot.engine.graphics.rendering.Uniform;
 import lombok.NonNull;
 import org.joml.Matrix4f;
+import org.joml.Vector4f;
 
 /**
  * @author nZeloT
  */
 public class ColoredRectangle extends Rectangle {
 
-    private Color color;
+    private Uniform colUniform;
+
+    //the color is kept within the entity store; this only receives a copy
+    private final Vector4f rgba = new Vector4f();
 
     public ColoredRectangle(String name, double sizeX, double sizeY, @NonNull Color color){
         super(name, sizeX, sizeY);
         //setup appearance
-        this.color = color;
+        setColor(color);
     }
 
     @Override
@@ -49,10 +57,48 @@ public class ColoredRectangle extends Rectangle {
     //doc
     @Override
     public void render(Matrix4f transformation) {
-        getShader().setUniform4f("col", color.asVector4f());
+        colUniform = resolve(colUniform, "col");
+        colUniform.set(getColor(rgba));
         super.render(transformation);
     }
 
+    //doc
+    @Override
+    protected RenderSnapshot.Draw record(Matrix4f transformation) {
+        RenderSnapshot.Draw geometry = super.record(transformation);
+        Shader shader = getShader();
+        Vector4f col = new Vector4f(getColor(rgba));
+
+        return () -> {
+            shader.uniform("col").set(col);
+            geometry.draw();
+        };
+    }
+
+    //doc
+    @Override
+    public boolean isTranslucent() {
+        return super.isTranslucent() || getColor(rgba).w < 1;
+    }
+
+    //doc
+    @Override
+    protected boolean batch(QuadRenderer batch, Matrix4f transformation) {
+        //a custom shader has to be rendered on its own
+        if (getShader() != ShaderManager.current().get(ShaderManager.STANDARD.SQUARE))
+            return false;
+
+        batch.drawQuad(transformation, getColor(rgba));
+        return true;
+    }
+
+    @Override
+    void describeQuad(EntityStore store, int index) {
+        //a custom shader has to be rendered on its own
+        boolean standard = getShader() == ShaderManager.current().get(ShaderManager.STANDARD.SQUARE);
+        store.describeQuad(index, standard ? EntityStore.QUAD_COLOR : EntityStore.QUAD_NONE, null, 0, 0, 0);
+    }
+
     @Override
     protected void onRemoveFromUniverse() {
         //NOP
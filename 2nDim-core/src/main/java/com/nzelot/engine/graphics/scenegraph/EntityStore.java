@@ -0,0 +1,703 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.scenegraph;
+
+import com.nzelot.engine.game.JobSystem;
+import com.nzelot.engine.graphics.rendering.QuadRenderer;
+import com.nzelot.engine.graphics.rendering.Texture;
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+import org.dyn4j.geometry.Transform;
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the state every object needs each frame in primitive columns (structure of arrays) instead of spreading it
+ * over the heap together with the objects. Every entity gets an id which stays valid as long as the entity exists;
+ * a sparse set maps the id to a dense index, so the columns stay packed and systems walk them from front to back.
+ * Destroying an entity moves the last entity into the freed slot.<br>
+ * The <code>GameObject</code> API reads and writes these columns while the object is part of a universe.<br>
+ * Entities may be attached to a parent entity. The transform of a child is derived from the transform of its parent
+ * and a local offset; the children are kept in a flat list ordered parents first, so the derived transforms are
+ * updated in a single pass which skips every subtree which did not move.
+ *
+ * @author nZeloT
+ */
+public class EntityStore {
+
+    private static final int NONE = -1;
+
+    /** the entity draws itself through <code>GameObject.batch</code> or <code>render</code> */
+    static final byte QUAD_NONE = 0;
+    /** a quad filled with the color of the entity */
+    static final byte QUAD_COLOR = 1;
+    /** a circle filled with the color of the entity */
+    static final byte QUAD_CIRCLE = 2;
+    /** a quad showing the texture of the entity or a frame of its sprite sheet */
+    static final byte QUAD_TEXTURE = 3;
+
+    //id -> dense index; NONE for unused ids
+    private int[] sparse;
+    //dense index -> id
+    private int[] ids;
+    private GameObject[] objects;
+
+    //destroyed ids get reused before new ones are handed out
+    private int[] freeIds;
+    private int freeCount;
+    private int nextId;
+
+    /** the number of entities; the columns are valid from 0 to <code>size</code> */
+    private @Getter int size;
+
+    /** the translation and rotation after the last simulation step */
+    @Getter float[] x, y, rotation;
+    /** the translation and rotation before the last simulation step */
+    @Getter float[] prevX, prevY, prevRotation;
+    /** the size the unit geometry gets scaled to */
+    @Getter float[] scaleX, scaleY;
+    @Getter int[] zIndex;
+    /** rgba; four values per entity */
+    @Getter float[] color;
+    /** the frame of a sprite sheet */
+    @Getter int[] frame;
+
+    //the hierarchy as ids: the parent, the first child and the next child of the same parent; NONE if there is none
+    private int[] parent, firstChild, nextSibling;
+    //the transform relative to the parent
+    private float[] localX, localY, localRotation;
+    //the transform changed since the last hierarchy update
+    private boolean[] dirty;
+
+    //counted up whenever the transform or the scale of the entity changes; per entity, so updates running in
+    //parallel never share a counter
+    private long[] version;
+
+    /** the number of entities whose transform changed during the last simulation step */
+    private @Getter int movedCount;
+
+    //the transformation matrix of the entity's object and the version and blend it was built for
+    private Matrix4f[] matrix;
+    private long[] matrixVersion;
+    private double[] matrixAlpha;
+    //equals visibleStamp if the entity is drawn this frame
+    private int[] visible;
+    private int visibleStamp;
+
+    //how the quad renderers draw the entity; see submitQuad()
+    byte[] quad;
+    Texture[] texture;
+    //the frames per row of a sprite sheet or 0 to show the whole texture, and the size of a frame; two values per entity
+    int[] sheetColumns;
+    float[] sheetSize;
+
+    //the ids of all entities with a parent; parents always come before their children
+    private int[] order;
+    private int orderCount;
+    private boolean hierarchyChanged;
+
+    public EntityStore() {
+        this(32);
+    }
+
+    /**
+     * @param capacity the number of entities to allocate the columns for; they grow if needed
+     */
+    public EntityStore(int capacity) {
+        if (capacity <= 0) {
+            Logger.log(EntityStore.class, "Invalid capacity: " + capacity, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+
+        sparse = new int[capacity];
+        Arrays.fill(sparse, NONE);
+        ids = new int[capacity];
+        objects = new GameObject[capacity];
+        freeIds = new int[capacity];
+
+        x = new float[capacity];
+        y = new float[capacity];
+        rotation = new float[capacity];
+        prevX = new float[capacity];
+        prevY = new float[capacity];
+        prevRotation = new float[capacity];
+        scaleX = new float[capacity];
+        scaleY = new float[capacity];
+        zIndex = new int[capacity];
+        color = new float[capacity << 2];
+        frame = new int[capacity];
+
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        localX = new float[capacity];
+        localY = new float[capacity];
+        localRotation = new float[capacity];
+        dirty = new boolean[capacity];
+        version = new long[capacity];
+        order = new int[capacity];
+
+        matrix = new Matrix4f[capacity];
+        matrixVersion = new long[capacity];
+        matrixAlpha = new double[capacity];
+        visible = new int[capacity];
+        quad = new byte[capacity];
+        texture = new Texture[capacity];
+        sheetColumns = new int[capacity];
+        sheetSize = new float[capacity << 1];
+    }
+
+    /**
+     * allocate a new entity at the end of the columns. The caller fills in the columns.
+     *
+     * @param object the object viewing the entity
+     * @return the id of the entity
+     */
+    int create(@NonNull GameObject object) {
+        int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+        if (id >= sparse.length) {
+            int old = sparse.length;
+            sparse = Arrays.copyOf(sparse, old << 1);
+            Arrays.fill(sparse, old, sparse.length, NONE);
+        }
+
+        if (size == ids.length)
+            grow(size << 1);
+
+        int i = size++;
+        sparse[id] = i;
+        ids[i] = id;
+        objects[i] = object;
+
+        parent[i] = firstChild[i] = nextSibling[i] = NONE;
+        localX[i] = localY[i] = localRotation[i] = 0;
+        //the matrix starts at version 0, so a new entity always differs
+        version[i] = 0;
+        markDirty(i);
+
+        matrix[i] = object.getTransMat();
+        matrixVersion[i] = 0;
+        visible[i] = visibleStamp - 1;
+        quad[i] = QUAD_NONE;
+        texture[i] = null;
+        return id;
+    }
+
+    /**
+     * free an entity; the last entity moves into its slot
+     *
+     * @param id the id of the entity
+     */
+    void destroy(int id) {
+        int i = indexOf(id);
+
+        //the children stay where they are
+        while (firstChild[i] != NONE)
+            setParent(firstChild[i], NONE);
+        if (parent[i] != NONE)
+            setParent(id, NONE);
+
+        int last = --size;
+        if (i != last)
+            move(last, i);
+
+        objects[last] = null;
+        matrix[last] = null;
+        texture[last] = null;
+        sparse[id] = NONE;
+
+        if (freeCount == freeIds.length)
+            freeIds = Arrays.copyOf(freeIds, freeCount << 1);
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * @return true if the id refers to an existing entity
+     */
+    public boolean contains(int id) {
+        return id >= 0 && id < sparse.length && sparse[id] != NONE;
+    }
+
+    /**
+     * @param id the id of an existing entity
+     * @return the dense index of the entity within the columns
+     */
+    public int indexOf(int id) {
+        if (!contains(id)) {
+            Logger.log(EntityStore.class, "Unknown entity: " + id, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Unknown entity: " + id);
+        }
+
+        return sparse[id];
+    }
+
+    /**
+     * @param index a dense index
+     * @return the id of the entity stored at the index
+     */
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @param index a dense index
+     * @return the object viewing the entity stored at the index
+     */
+    public GameObject objectAt(int index) {
+        return objects[index];
+    }
+
+    /**
+     * attach an entity to a parent or detach it. The entity keeps its current transform as the offset is reset.
+     *
+     * @param id       the id of the entity
+     * @param parentId the id of the new parent or -1 to detach the entity
+     */
+    void setParent(int id, int parentId) {
+        int i = indexOf(id);
+        if (parentId != NONE) {
+            indexOf(parentId);
+            for (int p = parentId; p != NONE; p = parent[sparse[p]]) {
+                if (p == id) {
+                    Logger.log(EntityStore.class, "Attaching entity " + id + " to " + parentId + " would create a cycle", Logger.LEVEL.ERROR);
+                    throw new IllegalArgumentException("Attaching entity " + id + " to " + parentId + " would create a cycle");
+                }
+            }
+        }
+
+        boolean wasAttached = parent[i] != NONE;
+
+        //unlink from the old parent
+        if (parent[i] != NONE) {
+            int p = sparse[parent[i]];
+            if (firstChild[p] == id) {
+                firstChild[p] = nextSibling[i];
+            } else {
+                int s = sparse[firstChild[p]];
+                while (nextSibling[s] != id)
+                    s = sparse[nextSibling[s]];
+                nextSibling[s] = nextSibling[i];
+            }
+        }
+
+        parent[i] = parentId;
+        nextSibling[i] = NONE;
+        localX[i] = localY[i] = localRotation[i] = 0;
+
+        if (parentId != NONE) {
+            int p = sparse[parentId];
+            nextSibling[i] = firstChild[p];
+            firstChild[p] = id;
+        }
+
+        //an attached entity only follows its parent; its body must neither be simulated nor collide
+        if (!wasAttached && parentId != NONE)
+            objects[i].freezeBody();
+        else if (wasAttached && parentId == NONE)
+            objects[i].releaseBody();
+
+        markDirty(i);
+        hierarchyChanged = true;
+    }
+
+    /**
+     * @return the id of the parent of an entity or -1 if it has none
+     */
+    public int parentOf(int id) {
+        return parent[indexOf(id)];
+    }
+
+    /**
+     * set the transform of an entity relative to its parent. The entity is moved there right away.
+     *
+     * @param id the id of an entity with a parent
+     */
+    void setLocal(int id, float x, float y, float rotation) {
+        int i = indexOf(id);
+        if (parent[i] == NONE) {
+            Logger.log(EntityStore.class, "Entity " + id + " has no parent", Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Entity " + id + " has no parent");
+        }
+
+        localX[i] = x;
+        localY[i] = y;
+        localRotation[i] = rotation;
+
+        place(i, sparse[parent[i]]);
+        //a teleport must not be interpolated
+        prevX[i] = this.x[i];
+        prevY[i] = this.y[i];
+        prevRotation[i] = this.rotation[i];
+        markDirty(i);
+    }
+
+    /**
+     * flag an entity as moved: its children follow with the next hierarchy update and its version changes
+     */
+    void markDirty(int index) {
+        dirty[index] = true;
+        version[index]++;
+    }
+
+    /**
+     * @param index a dense index
+     * @return a value which changes whenever the transform or the scale of the entity changes
+     */
+    public long versionAt(int index) {
+        return version[index];
+    }
+
+    /**
+     * @param index a dense index
+     * @return true if the transforms before and after the last step differ, so the rendered state depends on the
+     * interpolation
+     */
+    public boolean isMoving(int index) {
+        return x[index] != prevX[index] || y[index] != prevY[index] || rotation[index] != prevRotation[index];
+    }
+
+    /**
+     * move the children after their parents. Only subtrees with a moved entity at their top are updated.
+     * Called at the end of a simulation step after <code>pullTransforms()</code>.
+     */
+    void updateHierarchy() {
+        if (hierarchyChanged)
+            rebuildOrder();
+
+        for (int n = 0; n < orderCount; n++) {
+            int i = sparse[order[n]];
+            int p = sparse[parent[i]];
+            if (!dirty[i] && !dirty[p])
+                continue;
+
+            place(i, p);
+            if (!dirty[i])
+                movedCount++;
+            markDirty(i);
+        }
+
+        Arrays.fill(dirty, 0, size, false);
+    }
+
+    //derive the transform of an entity from its parent and move its body along
+    private void place(int i, int p) {
+        float cos = (float) Math.cos(rotation[p]);
+        float sin = (float) Math.sin(rotation[p]);
+        x[i] = x[p] + cos * localX[i] - sin * localY[i];
+        y[i] = y[p] + sin * localX[i] + cos * localY[i];
+        rotation[i] = rotation[p] + localRotation[i];
+
+        Transform t = objects[i].getBody().getTransform();
+        t.setTranslation(x[i], y[i]);
+        t.setRotation(rotation[i]);
+    }
+
+    //list the children breadth first starting at every root with children; the order itself is the queue
+    private void rebuildOrder() {
+        orderCount = 0;
+        for (int r = 0; r < size; r++) {
+            if (parent[r] != NONE || firstChild[r] == NONE)
+                continue;
+
+            int n = orderCount;
+            appendChildren(r);
+            while (n < orderCount)
+                appendChildren(sparse[order[n++]]);
+        }
+        hierarchyChanged = false;
+    }
+
+    private void appendChildren(int index) {
+        for (int c = firstChild[index]; c != NONE; c = nextSibling[sparse[c]])
+            order[orderCount++] = c;
+    }
+
+    /**
+     * run a system over all entities
+     *
+     * @param system the system to run
+     */
+    public void run(@NonNull EntitySystem system) {
+        system.process(this, 0, size);
+    }
+
+    /**
+     * run a system over all entities, split into ranges processed in parallel
+     *
+     * @param system the system to run; has to be safe to run concurrently for different ranges
+     * @param jobs   the job system to run the ranges on
+     */
+    public void run(@NonNull EntitySystem system, @NonNull JobSystem jobs) {
+        jobs.parallelRange(0, size, (from, to) -> system.process(this, from, to));
+    }
+
+    /**
+     * start collecting the entities drawn in the next frame; forgets the ones marked before
+     */
+    void clearVisible() {
+        visibleStamp++;
+    }
+
+    /**
+     * mark an entity as drawn in the next frame, so <code>buildMatrices</code> updates its matrix
+     */
+    void markVisible(int index) {
+        visible[index] = visibleStamp;
+    }
+
+    /**
+     * rebuild the matrices of the entities marked visible from a blend of the transforms before and after the last
+     * physics step. A matrix is kept as long as neither the entity nor the blend of a moving entity changed.
+     *
+     * @param from  the first dense index, inclusive
+     * @param to    the last dense index, exclusive
+     * @param alpha the progress from the previous (0) to the current (1) transform
+     */
+    void buildMatrices(int from, int to, double alpha) {
+        for (int i = from; i < to; i++) {
+            if (visible[i] != visibleStamp)
+                continue;
+
+            //a resting entity looks the same for every alpha
+            if (version[i] == matrixVersion[i] && (alpha == matrixAlpha[i] || !isMoving(i)))
+                continue;
+
+            buildMatrix(i, alpha, matrix[i]);
+            matrixVersion[i] = version[i];
+            matrixAlpha[i] = alpha;
+        }
+    }
+
+    /**
+     * draw an entity from its columns
+     *
+     * @param index   a dense index
+     * @param batch   the renderer to add the quad to
+     * @param scratch holds the color while submitting
+     * @return false if the entity has to draw itself; see <code>QUAD_NONE</code>
+     */
+    boolean submitQuad(int index, @NonNull QuadRenderer batch, @NonNull Vector4f scratch) {
+        switch (quad[index]) {
+            case QUAD_COLOR: {
+                int c = index << 2;
+                batch.drawQuad(matrix[index], scratch.set(color[c], color[c + 1], color[c + 2], color[c + 3]));
+                return true;
+            }
+            case QUAD_CIRCLE: {
+                int c = index << 2;
+                batch.drawCircle(matrix[index], scratch.set(color[c], color[c + 1], color[c + 2], color[c + 3]));
+                return true;
+            }
+            case QUAD_TEXTURE: {
+                Texture tex = texture[index];
+                int columns = sheetColumns[index];
+                if (columns == 0) {
+                    batch.drawQuad(matrix[index], tex, tex.getU0(), tex.getV0(), tex.getU1(), tex.getV1());
+                    return true;
+                }
+
+                //same mapping as in simpleSpriteAmbiant.frag
+                int row = frame[index] / columns;
+                int col = frame[index] - row * columns;
+                float w = sheetSize[index << 1];
+                float h = sheetSize[(index << 1) + 1];
+                batch.drawQuad(matrix[index], tex, tex.mapU(col * w), tex.mapV((row + 1) * h),
+                        tex.mapU((col + 1) * w), tex.mapV(row * h));
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * describe how the quad renderers draw an entity
+     *
+     * @param index   a dense index
+     * @param kind    one of the <code>QUAD_XXX</code> constants
+     * @param tex     the texture of <code>QUAD_TEXTURE</code>; null otherwise
+     * @param columns the frames per row of a sprite sheet; 0 to show the whole texture
+     * @param width   the width of a frame in texture coordinates
+     * @param height  the height of a frame in texture coordinates
+     */
+    void describeQuad(int index, byte kind, Texture tex, int columns, float width, float height) {
+        quad[index] = kind;
+        texture[index] = tex;
+        sheetColumns[index] = columns;
+        sheetSize[index << 1] = width;
+        sheetSize[(index << 1) + 1] = height;
+    }
+
+    /**
+     * copy the transforms of the bodies into the previous transform columns. Called right before the physics step.
+     */
+    void storePrevious() {
+        for (int i = 0; i < size; i++) {
+            Transform t = objects[i].getBody().getTransform();
+            float tx = (float) t.getTranslationX();
+            float ty = (float) t.getTranslationY();
+            float rot = (float) t.getRotation();
+
+            if (tx != prevX[i] || ty != prevY[i] || rot != prevRotation[i]) {
+                prevX[i] = tx;
+                prevY[i] = ty;
+                prevRotation[i] = rot;
+                version[i]++;
+            }
+        }
+    }
+
+    /**
+     * copy the transforms of the bodies into the current transform columns and flag the entities which moved.
+     * Called at the end of a simulation step.
+     */
+    void pullTransforms() {
+        movedCount = 0;
+        for (int i = 0; i < size; i++) {
+            Transform t = objects[i].getBody().getTransform();
+            float tx = (float) t.getTranslationX();
+            float ty = (float) t.getTranslationY();
+            float rot = (float) t.getRotation();
+
+            if (tx != x[i] || ty != y[i] || rot != rotation[i]) {
+                x[i] = tx;
+                y[i] = ty;
+                rotation[i] = rot;
+                markDirty(i);
+                movedCount++;
+            }
+        }
+    }
+
+    /**
+     * build the transformation matrix of an entity from a blend of its transforms before and after the last step
+     *
+     * @param index the dense index of the entity
+     * @param alpha the progress from the previous (0) to the current (1) transform
+     * @param dest  the matrix to overwrite
+     */
+    void buildMatrix(int index, double alpha, @NonNull Matrix4f dest) {
+        float tx = x[index];
+        float ty = y[index];
+        float rot = rotation[index];
+
+        if (alpha < 1) {
+            float a = (float) alpha;
+            tx = prevX[index] + (tx - prevX[index]) * a;
+            ty = prevY[index] + (ty - prevY[index]) * a;
+
+            //rotate along the shorter arc
+            float d = rot - prevRotation[index];
+            if (d > Math.PI)
+                d -= 2 * Math.PI;
+            else if (d < -Math.PI)
+                d += 2 * Math.PI;
+            rot = prevRotation[index] + d * a;
+        }
+
+        //the order is correct because of the way joml calculates the new matrix
+        dest.identity();
+        dest.translate(tx, ty, 0);
+        dest.rotateZ(rot);
+        dest.scale(scaleX[index], scaleY[index], 1);
+    }
+
+    //copy an entity from one slot to another
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        objects[to] = objects[from];
+        sparse[ids[to]] = to;
+
+        x[to] = x[from];
+        y[to] = y[from];
+        rotation[to] = rotation[from];
+        prevX[to] = prevX[from];
+        prevY[to] = prevY[from];
+        prevRotation[to] = prevRotation[from];
+        scaleX[to] = scaleX[from];
+        scaleY[to] = scaleY[from];
+        zIndex[to] = zIndex[from];
+        System.arraycopy(color, from << 2, color, to << 2, 4);
+        frame[to] = frame[from];
+
+        parent[to] = parent[from];
+        firstChild[to] = firstChild[from];
+        nextSibling[to] = nextSibling[from];
+        localX[to] = localX[from];
+        localY[to] = localY[from];
+        localRotation[to] = localRotation[from];
+        dirty[to] = dirty[from];
+        version[to] = version[from];
+
+        matrix[to] = matrix[from];
+        matrixVersion[to] = matrixVersion[from];
+        matrixAlpha[to] = matrixAlpha[from];
+        visible[to] = visible[from];
+        quad[to] = quad[from];
+        texture[to] = texture[from];
+        sheetColumns[to] = sheetColumns[from];
+        sheetSize[to << 1] = sheetSize[from << 1];
+        sheetSize[(to << 1) + 1] = sheetSize[(from << 1) + 1];
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        objects = Arrays.copyOf(objects, capacity);
+
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        rotation = Arrays.copyOf(rotation, capacity);
+        prevX = Arrays.copyOf(prevX, capacity);
+        prevY = Arrays.copyOf(prevY, capacity);
+        prevRotation = Arrays.copyOf(prevRotation, capacity);
+        scaleX = Arrays.copyOf(scaleX, capacity);
+        scaleY = Arrays.copyOf(scaleY, capacity);
+        zIndex = Arrays.copyOf(zIndex, capacity);
+        color = Arrays.copyOf(color, capacity << 2);
+        frame = Arrays.copyOf(frame, capacity);
+
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        localX = Arrays.copyOf(localX, capacity);
+        localY = Arrays.copyOf(localY, capacity);
+        localRotation = Arrays.copyOf(localRotation, capacity);
+        dirty = Arrays.copyOf(dirty, capacity);
+        version = Arrays.copyOf(version, capacity);
+        order = Arrays.copyOf(order, capacity);
+
+        matrix = Arrays.copyOf(matrix, capacity);
+        matrixVersion = Arrays.copyOf(matrixVersion, capacity);
+        matrixAlpha = Arrays.copyOf(matrixAlpha, capacity);
+        visible = Arrays.copyOf(visible, capacity);
+        quad = Arrays.copyOf(quad, capacity);
+        texture = Arrays.copyOf(texture, capacity);
+        sheetColumns = Arrays.copyOf(sheetColumns, capacity);
+        sheetSize = Arrays.copyOf(sheetSize, capacity << 1);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.scenegraph;
+
+/**
+ * Work done on the columns of an <code>EntityStore</code>. A system gets handed a range of dense indices and is
+ * expected to walk the columns it needs from <code>from</code> to <code>to</code> in order.
+ *
+ * @author nZeloT
+ */
+@FunctionalInterface
+public interface EntitySystem {
+
+    /**
+     * process the entities stored at the dense indices <code>[from, to)</code>.
+     * The columns have to be fetched from the store within this call; they are reallocated when the store grows.
+     *
+     * @param store the store holding the columns
+     * @param from  the first dense index, inclusive
+     * @param to    the last dense index, exclusive
+     */
+    void process(EntityStore store, int from, int to);
+}
@@ -25,15 +25,24 @@
 package com.nzelot.engine.graphics.scenegraph;
 
 
+import com.nzelot.engine.graphics.rendering.Color;
+import com.nzelot.engine.graphics.rendering.QuadRenderer;
+import com.nzelot.engine.graphics.rendering.RenderQueue;
 import com.nzelot.engine.graphics.rendering.Shader;
+import com.nzelot.engine.graphics.rendering.Texture;
+import com.nzelot.engine.graphics.rendering.Uniform;
 import com.nzelot.engine.graphics.rendering.VertexArray;
 import com.nzelot.engine.utils.Constants;
+import com.nzelot.engine.utils.logging.Logger;
 import lombok.*;
 import lombok.experimental.Delegate;
 import org.dyn4j.dynamics.*;
 import org.dyn4j.dynamics.joint.*;
 import org.dyn4j.geometry.*;
 import org.joml.Matrix4f;
+import org.joml.Vector4f;
+
+import java.util.Arrays;
 
 /**
  * The Entity Class represents the most basic Object within the whole Scenegraph.
@@ -47,15 +56,36 @@ public abstract class GameObject {
 
     private @Getter String name;
 
-    private @Getter int zIndex;
+    /** user defined tags; one bit per tag */
+    private @Getter long tags;
+
+    //the entity holding the per frame state while the object is part of a universe
+    private EntityStore store;
+    private int entity;
+
+    //the state kept by the object itself while it is not part of a universe
+    private int zIndex;
+    private int frame;
+    private final float[] color;
+
+    /**
+     * translucent objects are drawn in insertion order after the opaque objects of the same z-index.
+     * Opaque objects of the same z-index are ordered by their render state and may therefore be drawn in any order.
+     */
+    private @Getter @Setter boolean translucent;
 
     protected @Getter Matrix4f transMat;
 
     private @Getter Universe universe;
 
-    private @Getter(AccessLevel.PROTECTED) @Setter(AccessLevel.PROTECTED) Shader shader;
+    private @Getter(AccessLevel.PROTECTED) Shader shader;
     private @Getter(AccessLevel.PROTECTED) @Setter(AccessLevel.PROTECTED) VertexArray geometry;
 
+    private Uniform mvMatrix;
+
+    //the insertion order within the universe; keeps translucent objects in order
+    int sequence;
+
     /**
      * the constructor
      *
@@ -63,12 +93,16 @@ public abstract class GameObject {
      */
     GameObject(String name, Shader shad, VertexArray geo) {
         this.zIndex     = 0;
+        this.color      = new float[]{1, 1, 1, 1};
+        this.entity     = -1;
         this.transMat = new Matrix4f().identity();
 
         setName(name);
         setGeometry(geo);
         setShader(shad);
         physicalBody = new Body();
+        //used to get back from the broadphase results to the objects
+        physicalBody.setUserData(this);
     }
 
     /**
@@ -84,9 +118,9 @@ public abstract class GameObject {
      * @param transformation the transformation matrix to pass to the shader; it was calculated according to the current position, rotation and scale
      */
     public void render(Matrix4f transformation){
-        shader.setUniformMat4f("mv_matrix", transformation);
-        shader.setUniformMat4f("cm_matrix", getUniverse().getCameraMat());
-        shader.setUniformMat4f("pr_matrix", getUniverse().getProjectionMat());
+        //the projection and camera matrices are shared through the MatrixBlock
+        mvMatrix = resolve(mvMatrix, "mv_matrix");
+        mvMatrix.set(transformation);
 
         shader.bind();
         geometry.bind();
@@ -94,35 +128,219 @@ public abstract class GameObject {
         geometry.render();
     }
 
+    /**
+     * get a handle to a uniform of the current shader. The cached handle is reused as long as the shader stays the same.
+     *
+     * @param cached the handle resolved last time; may be <code>null</code>
+     * @param name   the name of the uniform
+     * @return the handle for the current shader
+     */
+    protected Uniform resolve(Uniform cached, String name) {
+        if (cached != null && cached.getShader() == shader)
+            return cached;
+
+        return shader.uniform(name);
+    }
+
+    /**
+     * hand the current entity over to a <code>QuadRenderer</code> instead of rendering it on its own.<br>
+     * Objects which are not able to be batched just return <code>false</code> and get rendered through <code>render(Matrix4f)</code>.
+     * Subclasses overriding <code>render(Matrix4f)</code> therefore should also override this method.
+     *
+     * @param batch          the renderer to add the entity to
+     * @param transformation the transformation matrix; it was calculated according to the current position, rotation and scale
+     * @return true if the entity was added to the renderer
+     */
+    protected boolean batch(QuadRenderer batch, Matrix4f transformation) {
+        return false;
+    }
+
+    /**
+     * record what <code>render(Matrix4f)</code> draws for the snapshot of the threaded game loop. The draw is
+     * replayed on the render thread while the simulation goes on, so it must only use copies of the current state.
+     * The default copies the shader, the geometry and the transformation; subclasses setting uniforms of their own in
+     * <code>render(Matrix4f)</code> have to record those as well.
+     *
+     * @param transformation the transformation matrix; it was calculated according to the current position, rotation and scale
+     * @return the recorded draw
+     */
+    protected RenderSnapshot.Draw record(Matrix4f transformation) {
+        Shader s = shader;
+        VertexArray g = geometry;
+        Matrix4f m = new Matrix4f(transformation);
+
+        return () -> {
+            s.uniform("mv_matrix").set(m);
+            s.bind();
+            g.bind();
+            g.render();
+        };
+    }
+
+    /**
+     * @return the texture used to render the entity or <code>null</code> if there is none
+     */
+    protected Texture getRenderTexture() {
+        return null;
+    }
+
+    /**
+     * declare whether <code>update(double)</code> may run concurrently with the updates of other entities.<br>
+     * A parallel safe update only writes the state of its own entity (including its own body) and only reads
+     * other entities. Adding or removing entities is fine, the universe applies those changes after the update phase.
+     *
+     * @return true if the update may run on a worker thread; false by default
+     */
+    protected boolean isParallelSafe() {
+        return false;
+    }
+
+    /**
+     * @return false if the entity can not be culled by the bounds of its body and has to be considered every frame
+     */
+    protected boolean isCullable() {
+        return true;
+    }
+
+    /**
+     * build the key used to order the entity within the <code>RenderQueue</code>
+     *
+     * @return the sort key
+     */
+    long getRenderKey(int zIndex) {
+        if (isTranslucent())
+            return RenderQueue.translucentKey(zIndex, sequence);
+
+        Texture tex = getRenderTexture();
+        return RenderQueue.opaqueKey(zIndex,
+                shader == null ? 0 : shader.getID(),
+                tex == null ? 0 : tex.getID(),
+                geometry == null ? 0 : geometry.getID());
+    }
+
     //todo add doc
     protected abstract void onAddToUniverse();
     protected abstract void onRemoveFromUniverse();
 
     //todo: add doc
     public void setName(String name) {
+        String old = this.name;
         this.name       = name;
 
         if(name == null){
             this.name = toString();
         }
+
+        if (universe != null && !this.name.equals(old))
+            universe.renamed(this, old);
+    }
+
+    /**
+     * replace the tags of the object
+     *
+     * @param tags the tags; one bit per tag
+     */
+    public void setTags(long tags) {
+        long old = this.tags;
+        this.tags = tags;
+
+        if (universe != null && tags != old)
+            universe.retagged(this, old);
+    }
+
+    //doc
+    public void addTags(long tags) {
+        setTags(this.tags | tags);
+    }
+
+    //doc
+    public void removeTags(long tags) {
+        setTags(this.tags & ~tags);
+    }
+
+    /**
+     * @return true if the object carries all the given tags
+     */
+    public boolean hasTags(long tags) {
+        return (this.tags & tags) == tags;
+    }
+
+    //doc
+    public int getZIndex(){
+        return store == null ? zIndex : store.zIndex[store.indexOf(entity)];
     }
 
     //todo add doc
     public void setZIndex(int newZIndex){
-        this.zIndex = newZIndex;
-        universe.zIndexChanged();
+        if (store == null)
+            this.zIndex = newZIndex;
+        else
+            store.zIndex[store.indexOf(entity)] = newZIndex;
+
+        if (universe != null)
+            universe.zIndexChanged();
+    }
+
+    /**
+     * @return the frame of the sprite sheet to show
+     */
+    protected int getFrame(){
+        return store == null ? frame : store.frame[store.indexOf(entity)];
+    }
+
+    //doc
+    protected void setFrame(int frame){
+        if (store == null)
+            this.frame = frame;
+        else
+            store.frame[store.indexOf(entity)] = frame;
+
+        if (universe != null)
+            universe.requestRedraw();
+    }
+
+    /**
+     * @param dest the vector to write the rgba values to
+     * @return <code>dest</code>
+     */
+    protected Vector4f getColor(@NonNull Vector4f dest){
+        float[] c = color;
+        int offset = 0;
+        if (store != null) {
+            c = store.color;
+            offset = store.indexOf(entity) << 2;
+        }
+
+        return dest.set(c[offset], c[offset + 1], c[offset + 2], c[offset + 3]);
+    }
+
+    //doc
+    protected void setColor(@NonNull Color color){
+        float[] c = this.color;
+        int offset = 0;
+        if (store != null) {
+            c = store.color;
+            offset = store.indexOf(entity) << 2;
+        }
+
+        c[offset]     = color.getRed();
+        c[offset + 1] = color.getGreen();
+        c[offset + 2] = color.getBlue();
+        c[offset + 3] = color.getAlpha();
+
+        if (universe != null)
+            universe.requestRedraw();
     }
 
     /**
      * update the entity and afterwards update all child entities
-     * followed by a reordering of the children based on their new z values if necessary
-     * and finally a recalculation of the transformation matrix if necessary
+     * followed by a reordering of the children based on their new z values if necessary.
+     * The transformation matrix is rebuilt right before rendering, see <code>EntityStore.buildMatrices</code>
      *
-     * @param delta the delta time to update
+     * @param delta the delta time to update in seconds
      */
     public void updateWrap(double delta) {
         update(delta);
-        updateMatrix();
     }
 
     //todo add doc
@@ -130,15 +348,187 @@ public abstract class GameObject {
         this.render(transMat);
     }
 
+    //doc
+    public boolean batchWrap(QuadRenderer batch) {
+        return this.batch(batch, transMat);
+    }
+
     //todo add doc
     protected void setUniverse(Universe universe) {
         this.universe = universe;
     }
 
+    /**
+     * move the per frame state of the object into an entity of the store
+     *
+     * @param store the store of the universe the object gets added to
+     */
+    void attach(@NonNull EntityStore store) {
+        int id = store.create(this);
+        int i = store.indexOf(id);
+
+        Transform t = physicalBody.getTransform();
+        store.x[i] = store.prevX[i] = (float) t.getTranslationX();
+        store.y[i] = store.prevY[i] = (float) t.getTranslationY();
+        store.rotation[i] = store.prevRotation[i] = (float) t.getRotation();
+        store.scaleX[i] = getRenderScaleX();
+        store.scaleY[i] = getRenderScaleY();
+        store.zIndex[i] = zIndex;
+        store.frame[i] = frame;
+        System.arraycopy(color, 0, store.color, i << 2, 4);
+
+        this.store = store;
+        this.entity = id;
+        describeQuad(store, i);
+    }
+
+    /**
+     * @return the dense index of the entity within the store of the universe
+     */
+    int getEntityIndex() {
+        return store.indexOf(entity);
+    }
+
+    /**
+     * describe how the quad renderers draw the object straight from the columns of the store, see
+     * <code>EntityStore.submitQuad</code>. Called whenever the object joins a store or changes its shader.
+     * By default the object draws itself through <code>batch(QuadRenderer, Matrix4f)</code> or <code>render(Matrix4f)</code>.
+     *
+     * @param store the store holding the entity
+     * @param index the dense index of the entity
+     */
+    void describeQuad(EntityStore store, int index) {
+        store.describeQuad(index, EntityStore.QUAD_NONE, null, 0, 0, 0);
+    }
+
+    //doc
+    protected void setShader(Shader shader) {
+        this.shader = shader;
+
+        if (store != null)
+            describeQuad(store, store.indexOf(entity));
+    }
+
+    /**
+     * take the per frame state back from the store and free the entity
+     */
+    void detach() {
+        if (store == null)
+            return;
+
+        int i = store.indexOf(entity);
+        zIndex = store.zIndex[i];
+        frame = store.frame[i];
+        System.arraycopy(store.color, i << 2, color, 0, 4);
+
+        store.destroy(entity);
+        store = null;
+        entity = -1;
+    }
+
+    /**
+     * attach the object to a parent object of the same universe. From now on the object follows the parent; its
+     * transform is derived from the one of the parent and the given offset. Meant for visual objects like a weapon
+     * held by a character: while attached the body has an infinite mass and only sensor fixtures, so it neither gets
+     * simulated nor collides. Detaching restores the body.
+     *
+     * @param parent   the object to follow
+     * @param x        the offset along the x axis of the parent
+     * @param y        the offset along the y axis of the parent
+     * @param rotation the rotation relative to the parent
+     */
+    public void attachTo(@NonNull GameObject parent, double x, double y, double rotation) {
+        if (store == null || parent.store != store) {
+            Logger.log(GameObject.class, "Tried to attach " + name + " to " + parent.name + " outside of a shared universe", Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Tried to attach " + name + " to " + parent.name + " outside of a shared universe");
+        }
+
+        store.setParent(entity, parent.entity);
+        store.setLocal(entity, (float) x, (float) y, (float) rotation);
+    }
+
+    /**
+     * change the offset to the parent
+     *
+     * @see #attachTo(GameObject, double, double, double)
+     */
+    public void setLocalTransform(double x, double y, double rotation) {
+        if (getParent() == null) {
+            Logger.log(GameObject.class, name + " is not attached to a parent", Logger.LEVEL.ERROR);
+            throw new IllegalStateException(name + " is not attached to a parent");
+        }
+
+        store.setLocal(entity, (float) x, (float) y, (float) rotation);
+    }
+
+    /**
+     * detach the object from its parent; it stays where it is
+     */
+    public void detachFromParent() {
+        if (getParent() != null)
+            store.setParent(entity, -1);
+    }
+
+    /**
+     * @return the object this object is attached to or <code>null</code> if there is none
+     */
+    public GameObject getParent() {
+        if (store == null)
+            return null;
+
+        int p = store.parentOf(entity);
+        return p < 0 ? null : store.objectAt(store.indexOf(p));
+    }
+
+    /**
+     * stop simulating the body while the object follows a parent
+     */
+    void freezeBody() {
+        frozenMassType = physicalBody.getMass().getType();
+        frozenSensors = new boolean[physicalBody.getFixtureCount()];
+        for (int i = 0; i < frozenSensors.length; i++) {
+            BodyFixture f = physicalBody.getFixture(i);
+            frozenSensors[i] = f.isSensor();
+            f.setSensor(true);
+        }
+
+        physicalBody.setMassType(Mass.Type.INFINITE);
+        physicalBody.setLinearVelocity(0, 0);
+        physicalBody.setAngularVelocity(0);
+        physicalBody.clearForce();
+        physicalBody.clearTorque();
+    }
+
+    /**
+     * restore the body frozen by <code>freezeBody()</code>
+     */
+    void releaseBody() {
+        if (frozenSensors == null)
+            return;
+
+        for (int i = 0; i < frozenSensors.length && i < physicalBody.getFixtureCount(); i++)
+            physicalBody.getFixture(i).setSensor(frozenSensors[i]);
+        physicalBody.setMassType(frozenMassType);
+
+        frozenSensors = null;
+        frozenMassType = null;
+    }
+
+    /**
+     * @return the id of the entity within the store of the universe or -1 if the object is not part of a universe
+     */
+    public int getEntity() {
+        return entity;
+    }
+
     private @Delegate(types = BodyDelegates.class)
     Body physicalBody;
     private AABB aabb;
 
+    //the state of the body before it got frozen by attaching the object to a parent
+    private Mass.Type frozenMassType;
+    private boolean[] frozenSensors;
+
     //doc
     public Vector2 getTranslation() {
         return physicalBody.getTransform().getTranslation();
@@ -147,6 +537,14 @@ public abstract class GameObject {
     //doc
     public void setTranslation(@NonNull Vector2 pos) {
         physicalBody.getTransform().setTranslation(pos);
+
+        //a teleport must not be interpolated
+        if (store != null) {
+            int i = store.indexOf(entity);
+            store.x[i] = store.prevX[i] = (float) pos.x;
+            store.y[i] = store.prevY[i] = (float) pos.y;
+            store.markDirty(i);
+        }
     }
 
     //doc
@@ -157,17 +555,86 @@ public abstract class GameObject {
     //doc
     public void setRotation(double rad) {
         physicalBody.getTransform().setRotation(rad);
+
+        if (store != null) {
+            int i = store.indexOf(entity);
+            store.rotation[i] = store.prevRotation[i] = (float) rad;
+            store.markDirty(i);
+        }
     }
 
-    //doc
-    void updateMatrix() {
-        Transform transform = physicalBody.getTransform();
-        transMat.identity();
+    /**
+     * @return the width the unit geometry gets scaled to; the width of the body by default
+     */
+    float getRenderScaleX() {
+        return aabb == null ? 1 : (float) (aabb.getWidth() * Constants.PHY_SCALE);
+    }
+
+    /**
+     * @return the height the unit geometry gets scaled to; the height of the body by default
+     */
+    float getRenderScaleY() {
+        return aabb == null ? 1 : (float) (aabb.getHeight() * Constants.PHY_SCALE);
+    }
 
-        //the order is correct because of the way joml calculates the new matrix
-        transMat.translate((float) transform.getTranslationX(), (float) transform.getTranslationY(), 0);
-        transMat.rotateZ((float) transform.getRotation());
-        transMat.scale((float) (aabb.getWidth() * Constants.PHY_SCALE), (float) (aabb.getHeight() * Constants.PHY_SCALE), 1);
+    /**
+     * compute the axis aligned bounds of the body from its current transform
+     *
+     * @param dest the array to write min x, min y, max x and max y to
+     * @return <code>dest</code>
+     */
+    double[] getWorldBounds(@NonNull double[] dest) {
+        Transform t = physicalBody.getTransform();
+        double tx = t.getTranslationX();
+        double ty = t.getTranslationY();
+
+        if (aabb == null) {
+            dest[0] = dest[2] = tx;
+            dest[1] = dest[3] = ty;
+            return dest;
+        }
+
+        //rotate the local bounds and enclose them again
+        double cos = Math.cos(t.getRotation());
+        double sin = Math.sin(t.getRotation());
+        double cx = (aabb.getMinX() + aabb.getMaxX()) / 2;
+        double cy = (aabb.getMinY() + aabb.getMaxY()) / 2;
+        double hx = aabb.getWidth() / 2;
+        double hy = aabb.getHeight() / 2;
+        double wx = tx + cos * cx - sin * cy;
+        double wy = ty + sin * cx + cos * cy;
+        double ex = Math.abs(cos) * hx + Math.abs(sin) * hy;
+        double ey = Math.abs(sin) * hx + Math.abs(cos) * hy;
+
+        dest[0] = wx - ex;
+        dest[1] = wy - ey;
+        dest[2] = wx + ex;
+        dest[3] = wy + ey;
+        return dest;
+    }
+
+    //the fixtures of the body changed
+    private void updateBounds() {
+        //the bounds in body space, independent of where the body currently is
+        aabb = physicalBody.createAABB(Transform.IDENTITY);
+
+        //fixtures added while the body is frozen have to stay out of collisions as well
+        if (frozenSensors != null && frozenSensors.length < physicalBody.getFixtureCount()) {
+            int old = frozenSensors.length;
+            frozenSensors = Arrays.copyOf(frozenSensors, physicalBody.getFixtureCount());
+            for (int i = old; i < frozenSensors.length; i++) {
+                BodyFixture f = physicalBody.getFixture(i);
+                frozenSensors[i] = f.isSensor();
+                f.setSensor(true);
+            }
+        }
+
+        if (store != null) {
+            int i = store.indexOf(entity);
+            store.scaleX[i] = getRenderScaleX();
+            store.scaleY[i] = getRenderScaleY();
+            store.markDirty(i);
+        }
     }
 
     //doc
@@ -273,28 +740,28 @@ public abstract class GameObject {
     //doc
     BodyFixture addFixture(@NonNull Convex convex) {
         BodyFixture fix =  physicalBody.addFixture(convex);
-        aabb = physicalBody.createAABB();
+        updateBounds();
         return fix;
     }
 
     //doc
     BodyFixture addFixture(@NonNull Convex convex, double density) {
         BodyFixture fix = physicalBody.addFixture(convex, density);
-        aabb = physicalBody.createAABB();
+        updateBounds();
         return fix;
     }
 
     //doc
     BodyFixture addFixture(@NonNull Convex convex, double density, double friction, double restitution) {
         BodyFixture fix =  physicalBody.addFixture(convex, density, friction, restitution);
-        aabb = physicalBody.createAABB();
+        updateBounds();
         return fix;
     }
 
     //doc
     Body addFixture(@NonNull BodyFixture fixture) {
         Body b = physicalBody.addFixture(fixture);
-        aabb = physicalBody.createAABB();
+        updateBounds();
         return b;
     }
 
@@ -0,0 +1,177 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.scenegraph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the objects of a universe findable by name, type and tag without walking all of them.
+ * Every bucket keeps the order the objects were added in. The universe updates the index whenever an object gets
+ * added, removed, renamed or retagged; the methods are synchronized as parallel updates may do so as well.
+ *
+ * @author nZeloT
+ */
+class ObjectIndex {
+
+    private final Map<String, Set<GameObject>> names;
+    private final Map<Class<?>, Set<GameObject>> types;
+    private final List<Set<GameObject>> tags;
+
+    //the type buckets holding instances of a queried type; rebuilt when a new type shows up
+    private final Map<Class<?>, List<Set<GameObject>>> assignable;
+
+    ObjectIndex() {
+        names = new HashMap<>();
+        types = new HashMap<>();
+        tags = new ArrayList<>(Long.SIZE);
+        for (int i = 0; i < Long.SIZE; i++)
+            tags.add(new LinkedHashSet<>());
+        assignable = new HashMap<>();
+    }
+
+    synchronized void add(GameObject o) {
+        names.computeIfAbsent(o.getName(), n -> new LinkedHashSet<>()).add(o);
+
+        Set<GameObject> type = types.get(o.getClass());
+        if (type == null) {
+            type = new LinkedHashSet<>();
+            types.put(o.getClass(), type);
+            assignable.clear();
+        }
+        type.add(o);
+
+        addTags(o, o.getTags());
+    }
+
+    synchronized void remove(GameObject o) {
+        removeName(o, o.getName());
+        types.get(o.getClass()).remove(o);
+        removeTags(o, o.getTags());
+    }
+
+    synchronized void rename(GameObject o, String old) {
+        removeName(o, old);
+        names.computeIfAbsent(o.getName(), n -> new LinkedHashSet<>()).add(o);
+    }
+
+    synchronized void retag(GameObject o, long old) {
+        removeTags(o, old & ~o.getTags());
+        addTags(o, o.getTags() & ~old);
+    }
+
+    /**
+     * @return the first object added with the name or <code>null</code> if there is none
+     */
+    synchronized GameObject first(String name) {
+        Set<GameObject> s = names.get(name);
+        return s == null ? null : s.iterator().next();
+    }
+
+    synchronized <C extends Collection<? super GameObject>> C byName(String name, C result) {
+        Set<GameObject> s = names.get(name);
+        if (s != null)
+            result.addAll(s);
+        return result;
+    }
+
+    /**
+     * collect the instances of a type carrying all the given tags. Walks either the type buckets or the smallest
+     * tag bucket, whichever holds less objects.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T, C extends Collection<? super T>> C byType(Class<T> type, long mask, C result) {
+        List<Set<GameObject>> buckets = assignable.computeIfAbsent(type, this::collectAssignable);
+
+        int typeCount = 0;
+        for (Set<GameObject> s : buckets)
+            typeCount += s.size();
+
+        Set<GameObject> tagged = smallestTag(mask);
+        if (tagged != null && tagged.size() < typeCount) {
+            for (GameObject o : tagged)
+                if (type.isInstance(o) && o.hasTags(mask))
+                    result.add((T) o);
+            return result;
+        }
+
+        for (Set<GameObject> s : buckets)
+            for (GameObject o : s)
+                if (o.hasTags(mask))
+                    result.add((T) o);
+        return result;
+    }
+
+    synchronized <C extends Collection<? super GameObject>> C byTags(long mask, C result) {
+        Set<GameObject> tagged = smallestTag(mask);
+        if (tagged == null)
+            return result;
+
+        for (GameObject o : tagged)
+            if (o.hasTags(mask))
+                result.add(o);
+        return result;
+    }
+
+    //the bucket of the least used tag within the mask; null for an empty mask
+    private Set<GameObject> smallestTag(long mask) {
+        Set<GameObject> smallest = null;
+        for (long m = mask; m != 0; m &= m - 1) {
+            Set<GameObject> s = tags.get(Long.numberOfTrailingZeros(m));
+            if (smallest == null || s.size() < smallest.size())
+                smallest = s;
+        }
+        return smallest;
+    }
+
+    private List<Set<GameObject>> collectAssignable(Class<?> type) {
+        List<Set<GameObject>> buckets = new ArrayList<>();
+        for (Map.Entry<Class<?>, Set<GameObject>> e : types.entrySet())
+            if (type.isAssignableFrom(e.getKey()))
+                buckets.add(e.getValue());
+        return buckets;
+    }
+
+    private void removeName(GameObject o, String name) {
+        Set<GameObject> s = names.get(name);
+        if (s != null && s.remove(o) && s.isEmpty())
+            names.remove(name);
+    }
+
+    private void addTags(GameObject o, long mask) {
+        for (long m = mask; m != 0; m &= m - 1)
+            tags.get(Long.numberOfTrailingZeros(m)).add(o);
+    }
+
+    private void removeTags(GameObject o, long mask) {
+        for (long m = mask; m != 0; m &= m - 1)
+            tags.get(Long.numberOfTrailingZeros(m)).remove(o);
+    }
+}
@@ -36,8 +36,8 @@ public abstract class Rectangle extends GameObject {
     //doc
     public Rectangle(String name, double sizeX, double sizeY) {
         this(name, sizeX, sizeY,
-                ShaderManager.instance.get(ShaderManager.STANDARD.SQUARE),
-                VertexArrayManager.instance.get(VertexArrayManager.STANDARD.SQUARE)
+                ShaderManager.current().get(ShaderManager.STANDARD.SQUARE),
+                VertexArrayManager.current().get(VertexArrayManager.STANDARD.SQUARE)
         );
     }
 
@@ -52,7 +52,7 @@ public abstract class Rectangle extends GameObject {
     //doc
     @Override
     protected void onAddToUniverse() {
-        getShader().setUniformMat4f("pr_matrix", getUniverse().getProjectionMat());
+        //NOP
     }
 
 }
@@ -0,0 +1,208 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.scenegraph;
+
+import com.nzelot.engine.graphics.rendering.QuadRenderer;
+import com.nzelot.engine.graphics.rendering.Texture;
+import lombok.Getter;
+import lombok.NonNull;
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+
+import java.util.Arrays;
+
+/**
+ * An immutable-once-published picture of everything the universe draws in one simulation tick.<br>
+ * The simulation thread records it by handing the visible objects to it like to any other <code>QuadRenderer</code>;
+ * the render thread replays it into the real renderer. Only the transformation, the color or texture region and the
+ * kind of every quad get copied, so the simulation may change the objects while the snapshot is drawn.
+ * <p>
+ * Objects which can not be batched record a <code>Draw</code> holding copies of everything they render, so the
+ * replay never calls back into the objects.
+ *
+ * @author nZeloT
+ */
+public class RenderSnapshot implements QuadRenderer {
+
+    /**
+     * A draw recorded by an object which can not be batched. It runs on the render thread while the simulation keeps
+     * changing the object, so it may only use the state copied at recording time.
+     */
+    @FunctionalInterface
+    public interface Draw {
+        void draw();
+    }
+
+    private static final byte QUAD      = 0;
+    private static final byte TEX_QUAD  = 1;
+    private static final byte CIRCLE    = 2;
+    private static final byte IMMEDIATE = 3;
+
+    //m00, m01, m10, m11, m30, m31 and four floats of color or texture region
+    private static final int STRIDE = 10;
+
+    private byte[] kinds;
+    private float[] data;
+    private Texture[] textures;
+    private Draw[] draws;
+
+    private @Getter int size;
+    private int immediateCount;
+
+    final Matrix4f projection;
+    final Matrix4f camera;
+
+    /** the number of the simulation tick this snapshot was taken after */
+    @Getter long tick;
+
+    private final Matrix4f scratchMatrix;
+    private final Vector4f scratchColor;
+
+    public RenderSnapshot() {
+        kinds = new byte[64];
+        data = new float[64 * STRIDE];
+        textures = new Texture[64];
+        draws = new Draw[8];
+
+        projection = new Matrix4f();
+        camera = new Matrix4f();
+
+        scratchMatrix = new Matrix4f();
+        scratchColor = new Vector4f();
+    }
+
+    @Override
+    public void begin() {
+        //drop the references of the last recording
+        Arrays.fill(textures, 0, size, null);
+        Arrays.fill(draws, 0, immediateCount, null);
+        size = 0;
+        immediateCount = 0;
+    }
+
+    @Override
+    public void drawQuad(@NonNull Matrix4f transformation, @NonNull Vector4f color) {
+        add(QUAD, transformation, color.x, color.y, color.z, color.w, null);
+    }
+
+    @Override
+    public void drawQuad(@NonNull Matrix4f transformation, @NonNull Texture tex, float u0, float v0, float u1, float v1) {
+        add(TEX_QUAD, transformation, u0, v0, u1, v1, tex);
+    }
+
+    @Override
+    public void drawCircle(@NonNull Matrix4f transformation, @NonNull Vector4f color) {
+        add(CIRCLE, transformation, color.x, color.y, color.z, color.w, null);
+    }
+
+    /**
+     * record the draw of an object which can not be batched
+     */
+    void drawRecorded(@NonNull Draw draw, Matrix4f transformation) {
+        if (immediateCount == draws.length)
+            draws = Arrays.copyOf(draws, immediateCount << 1);
+
+        draws[immediateCount] = draw;
+
+        //the index of the draw is stored in place of the color
+        add(IMMEDIATE, transformation, immediateCount++, 0, 0, 0, null);
+    }
+
+    @Override
+    public void flush() {
+        //NOP; the recording keeps its order anyway
+    }
+
+    @Override
+    public void end() {
+        //NOP
+    }
+
+    /**
+     * draw the recorded quads with a real renderer. Has to be called from the thread owning the GL context.
+     *
+     * @param target the renderer to replay into
+     */
+    void replay(QuadRenderer target) {
+        target.begin();
+
+        for (int i = 0; i < size; i++) {
+            int o = i * STRIDE;
+
+            if (kinds[i] == IMMEDIATE) {
+                int index = (int) data[o + 6];
+                target.flush();
+                draws[index].draw();
+                continue;
+            }
+
+            Matrix4f m = scratchMatrix.identity();
+            m.m00 = data[o];
+            m.m01 = data[o + 1];
+            m.m10 = data[o + 2];
+            m.m11 = data[o + 3];
+            m.m30 = data[o + 4];
+            m.m31 = data[o + 5];
+
+            switch (kinds[i]) {
+                case QUAD:
+                    target.drawQuad(m, scratchColor.set(data[o + 6], data[o + 7], data[o + 8], data[o + 9]));
+                    break;
+                case TEX_QUAD:
+                    target.drawQuad(m, textures[i], data[o + 6], data[o + 7], data[o + 8], data[o + 9]);
+                    break;
+                case CIRCLE:
+                    target.drawCircle(m, scratchColor.set(data[o + 6], data[o + 7], data[o + 8], data[o + 9]));
+                    break;
+            }
+        }
+
+        target.end();
+    }
+
+    private void add(byte kind, Matrix4f m, float d0, float d1, float d2, float d3, Texture tex) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, size << 1);
+            data = Arrays.copyOf(data, (size << 1) * STRIDE);
+            textures = Arrays.copyOf(textures, size << 1);
+        }
+
+        int o = size * STRIDE;
+        data[o]     = m.m00;
+        data[o + 1] = m.m01;
+        data[o + 2] = m.m10;
+        data[o + 3] = m.m11;
+        data[o + 4] = m.m30;
+        data[o + 5] = m.m31;
+        data[o + 6] = d0;
+        data[o + 7] = d1;
+        data[o + 8] = d2;
+        data[o + 9] = d3;
+
+        kinds[size] = kind;
+        textures[size] = tex;
+        size++;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.scenegraph;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands <code>RenderSnapshot</code>s from the simulation thread to the render thread without locking.<br>
+ * Of the three snapshots one is written by the simulation, one is drawn by the renderer and one holds the latest
+ * published state. Neither side ever waits for the other; the renderer simply draws the newest complete snapshot.
+ *
+ * @author nZeloT
+ */
+public class SnapshotBuffer {
+
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private final RenderSnapshot[] snapshots;
+
+    //the index of the published snapshot and whether the renderer has not picked it up yet
+    private final AtomicInteger published;
+
+    private int writing;
+    private int reading;
+
+    public SnapshotBuffer() {
+        snapshots = new RenderSnapshot[]{new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot()};
+        writing = 0;
+        published = new AtomicInteger(1);
+        reading = 2;
+    }
+
+    /**
+     * @return the snapshot the simulation thread may record into
+     */
+    public RenderSnapshot getWriteSnapshot() {
+        return snapshots[writing];
+    }
+
+    /**
+     * make the recorded snapshot available to the renderer. Called by the simulation thread.
+     */
+    public void publish() {
+        writing = published.getAndSet(writing | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * @return true if a snapshot was published since the last <code>acquire()</code>
+     */
+    public boolean hasFresh() {
+        return (published.get() & FRESH) != 0;
+    }
+
+    /**
+     * get the newest snapshot. Called by the render thread; the snapshot stays valid until the next call.
+     *
+     * @return the newest published snapshot or the last one if nothing new was published
+     */
+    public RenderSnapshot acquire() {
+        if (hasFresh())
+            reading = published.getAndSet(reading) & INDEX_MASK;
+
+        return snapshots[reading];
+    }
+}
@@ -24,10 +24,12 @@
 
 package com.nzelot.engine.graphics.scenegraph;
 
+import com.nzelot.engine.graphics.rendering.QuadRenderer;
+import com.nzelot.engine.graphics.rendering.Shader;
 import com.nzelot.engine.graphics.rendering.ShaderManager;
 import com.nzelot.engine.graphics.rendering.Texture;
+import com.nzelot.engine.graphics.rendering.Uniform;
 import com.nzelot.engine.graphics.rendering.VertexArrayManager;
-import lombok.Getter;
 import org.joml.Matrix4f;
 import org.joml.Vector4f;
 
@@ -36,28 +38,29 @@ import org.joml.Vector4f;
  */
 public class Sprite extends TexturedRectangle {
 
-    private int texPerRow;
+    private Uniform spriteUniform;
 
-    protected @Getter int current;
+    private int texPerRow;
 
     //0 - row; 1 = col; 2 = width; 3 = height
     private Vector4f spriteData;
 
-    protected boolean changed;
+    //the frame spriteData was calculated for
+    private int calculated;
 
     public Sprite(String name, double sizeX, double sizeY, Texture tex, int current, int texPerRow, float texWidth, float texHeight) {
         super(name, sizeX, sizeY, tex,
-                ShaderManager.instance.get(ShaderManager.STANDARD.SQUARE_SPRITE),
-                VertexArrayManager.instance.get(VertexArrayManager.STANDARD.SQUARE)
+                ShaderManager.current().get(ShaderManager.STANDARD.SQUARE_SPRITE),
+                VertexArrayManager.current().get(VertexArrayManager.STANDARD.SQUARE)
         );
 
-        this.current = current;
+        setFrame(current);
         this.texPerRow = texPerRow;
 
         this.spriteData = new Vector4f();
         this.spriteData.z = texWidth;
         this.spriteData.w = texHeight;
-        this.changed = true;
+        this.calculated = -1;
     }
 
     @Override
@@ -67,14 +70,64 @@ public class Sprite extends TexturedRectangle {
 
     @Override
     public void render(Matrix4f transformation) {
-        if(changed){
+        recalcSpriteData();
+
+        spriteUniform = resolve(spriteUniform, "sprite");
+        spriteUniform.set(spriteData);
+        super.render(transformation);
+    }
+
+    @Override
+    protected RenderSnapshot.Draw record(Matrix4f transformation) {
+        recalcSpriteData();
+
+        RenderSnapshot.Draw textured = super.record(transformation);
+        Shader shader = getShader();
+        Vector4f data = new Vector4f(spriteData);
+
+        return () -> {
+            shader.uniform("sprite").set(data);
+            textured.draw();
+        };
+    }
+
+    @Override
+    protected boolean batch(QuadRenderer batch, Matrix4f transformation) {
+        //a custom shader has to be rendered on its own
+        if (getShader() != ShaderManager.current().get(ShaderManager.STANDARD.SQUARE_SPRITE))
+            return false;
+
+        recalcSpriteData();
+
+        //same mapping as in simpleSpriteAmbiant.frag
+        float u0 = spriteData.y * spriteData.z;
+        float u1 = (spriteData.y + 1) * spriteData.z;
+        float v0 = (spriteData.x + 1) * spriteData.w;
+        float v1 = spriteData.x * spriteData.w;
+
+        Texture tex = getTex();
+        batch.drawQuad(transformation, tex, tex.mapU(u0), tex.mapV(v0), tex.mapU(u1), tex.mapV(v1));
+        return true;
+    }
+
+    @Override
+    void describeQuad(EntityStore store, int index) {
+        //a custom shader has to be rendered on its own
+        if (getShader() != ShaderManager.current().get(ShaderManager.STANDARD.SQUARE_SPRITE)) {
+            store.describeQuad(index, EntityStore.QUAD_NONE, null, 0, 0, 0);
+            return;
+        }
+
+        store.describeQuad(index, EntityStore.QUAD_TEXTURE, getTex(), texPerRow, spriteData.z, spriteData.w);
+    }
+
+    private void recalcSpriteData() {
+        int current = getFrame();
+        if(current != calculated){
             spriteData.x = (int)((current+0.0f) / texPerRow);
             spriteData.y = (int)(current - spriteData.x * texPerRow);
-            changed = false;
+            calculated = current;
         }
-
-        getShader().setUniform4f("sprite", spriteData);
-        super.render(transformation);
     }
 
     @Override
@@ -82,8 +135,11 @@ public class Sprite extends TexturedRectangle {
 
     }
 
+    public int getCurrent() {
+        return getFrame();
+    }
+
     public void setCurrent(int current) {
-        this.current = current;
-        this.changed = true;
+        setFrame(current);
     }
 }
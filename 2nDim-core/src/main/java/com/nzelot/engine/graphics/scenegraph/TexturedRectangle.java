@@ -34,6 +34,9 @@ import org.joml.Matrix4f;
  */
 public class TexturedRectangle extends Rectangle {
 
+    private Uniform texUniform;
+    private Uniform regionUniform;
+
     private @Getter(AccessLevel.PROTECTED) Texture tex;
 
     TexturedRectangle(String name, double sizeX, double sizeY, Texture tex, Shader shader, VertexArray geo) {
@@ -43,8 +46,8 @@ public class TexturedRectangle extends Rectangle {
 
     public TexturedRectangle(String name, double sizeX, double sizeY, Texture tex) {
         this(name, sizeX, sizeY, tex,
-                ShaderManager.instance.get(ShaderManager.STANDARD.SQUARE_TEXTURE),
-                VertexArrayManager.instance.get(VertexArrayManager.STANDARD.SQUARE)
+                ShaderManager.current().get(ShaderManager.STANDARD.SQUARE_TEXTURE),
+                VertexArrayManager.current().get(VertexArrayManager.STANDARD.SQUARE)
         );
     }
 
@@ -56,10 +59,50 @@ public class TexturedRectangle extends Rectangle {
     @Override
     public void render(Matrix4f transformation) {
         tex.bind();
-        getShader().setUniform1i("tex", 1);
+        texUniform = resolve(texUniform, "tex");
+        texUniform.set(1);
+        regionUniform = resolve(regionUniform, "region");
+        regionUniform.set(tex.getU0(), tex.getV0(), tex.getU1(), tex.getV1());
         super.render(transformation);
     }
 
+    @Override
+    protected RenderSnapshot.Draw record(Matrix4f transformation) {
+        RenderSnapshot.Draw geometry = super.record(transformation);
+        Shader shader = getShader();
+        Texture t = tex;
+        float u0 = t.getU0(), v0 = t.getV0(), u1 = t.getU1(), v1 = t.getV1();
+
+        return () -> {
+            t.bind();
+            shader.uniform("tex").set(1);
+            shader.uniform("region").set(u0, v0, u1, v1);
+            geometry.draw();
+        };
+    }
+
+    @Override
+    protected Texture getRenderTexture() {
+        return tex;
+    }
+
+    @Override
+    protected boolean batch(QuadRenderer batch, Matrix4f transformation) {
+        //a custom shader has to be rendered on its own
+        if (getShader() != ShaderManager.current().get(ShaderManager.STANDARD.SQUARE_TEXTURE))
+            return false;
+
+        batch.drawQuad(transformation, tex, tex.getU0(), tex.getV0(), tex.getU1(), tex.getV1());
+        return true;
+    }
+
+    @Override
+    void describeQuad(EntityStore store, int index) {
+        //a custom shader has to be rendered on its own
+        boolean standard = getShader() == ShaderManager.current().get(ShaderManager.STANDARD.SQUARE_TEXTURE);
+        store.describeQuad(index, standard ? EntityStore.QUAD_TEXTURE : EntityStore.QUAD_NONE, tex, 0, 0, 0);
+    }
+
     @Override
     protected void onRemoveFromUniverse() {
 
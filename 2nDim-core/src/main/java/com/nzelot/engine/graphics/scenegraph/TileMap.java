@@ -0,0 +1,524 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 nZeloT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.nzelot.engine.graphics.scenegraph;
+
+import com.nzelot.engine.graphics.rendering.*;
+import com.nzelot.engine.utils.BufferUtils;
+import com.nzelot.engine.utils.logging.Logger;
+import lombok.Getter;
+import lombok.NonNull;
+import org.dyn4j.geometry.AABB;
+import org.dyn4j.geometry.Mass;
+import org.joml.Matrix4f;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A grid of tiles drawn from a tile set whose textures share one atlas page.<br>
+ * The tile IDs are kept in plain <code>int</code> arrays split into square chunks. Every chunk is baked into a single
+ * static vertex array which is only rebuilt after one of its tiles changed, and only chunks within the view of the
+ * main camera are drawn. Tile ID 0 is empty.
+ * <p>
+ * Tiles marked as solid are merged greedily into as few rectangles as possible which become the static fixtures
+ * of the map. Tile <code>(0, 0)</code> covers the area from the origin of the map to <code>(tileSize, tileSize)</code>.
+ *
+ * @author nZeloT
+ */
+public class TileMap extends GameObject {
+
+    /** the default number of tiles along each side of a chunk */
+    public static final int DEFAULT_CHUNK_SIZE = 16;
+
+    //the vertices of a chunk need to be addressable by an unsigned short
+    private static final int MAX_CHUNK_SIZE = 128;
+
+    //x, y, u, v in map space
+    private static final VertexFormat FORMAT = new VertexFormat()
+            .attribute(Shader.VERTEX_ATTRIB, 2, VertexFormat.Type.FLOAT)
+            .attribute(Shader.TCOORD_ATTRIB, 2, VertexFormat.Type.FLOAT);
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private final String keyPrefix;
+
+    private final @Getter int width, height;
+    private final @Getter int chunkSize;
+    private final @Getter float tileSize;
+
+    private final int chunksX, chunksY;
+    private final Chunk[] chunks;
+    private final int[] indices;
+
+    private final Texture[] tileSet;
+    private final boolean[] solid;
+    private Texture page;
+
+    private boolean collidersChanged;
+    private @Getter int colliderCount;
+    private @Getter int visibleChunks;
+
+    private Uniform texUniform;
+    private Uniform regionUniform;
+    private Uniform mvUniform;
+
+    public TileMap(String name, int width, int height, float tileSize, @NonNull Texture[] tileSet) {
+        this(name, width, height, tileSize, tileSet, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param name      the name of the map
+     * @param width     the number of tiles per row
+     * @param height    the number of rows
+     * @param tileSize  the width and height of a tile in world units
+     * @param tileSet   the texture of every tile ID; index 0 is ignored. All the textures have to be on the same atlas page
+     * @param chunkSize the number of tiles along each side of a chunk
+     */
+    public TileMap(String name, int width, int height, float tileSize, @NonNull Texture[] tileSet, int chunkSize) {
+        super(name, ShaderManager.current().get(ShaderManager.STANDARD.SQUARE_TEXTURE), null);
+
+        if (width <= 0 || height <= 0 || tileSize <= 0 || chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            Logger.log(TileMap.class, "Invalid tile map dimensions: " + width + "x" + height + " tiles of " + tileSize + ", chunk size " + chunkSize, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid tile map dimensions: " + width + "x" + height + " tiles of " + tileSize + ", chunk size " + chunkSize);
+        }
+
+        this.keyPrefix = "com.nzelot.2nDim.tilemap." + nextId.getAndIncrement() + ".";
+
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.chunkSize = chunkSize;
+
+        this.tileSet = tileSet.clone();
+        this.solid = new boolean[tileSet.length];
+
+        this.chunksX = (width + chunkSize - 1) / chunkSize;
+        this.chunksY = (height + chunkSize - 1) / chunkSize;
+        this.chunks = new Chunk[chunksX * chunksY];
+        for (int cy = 0; cy < chunksY; cy++)
+            for (int cx = 0; cx < chunksX; cx++)
+                chunks[cy * chunksX + cx] = new Chunk(cx, cy, chunkSize, keyPrefix + cx + "." + cy);
+
+        this.indices = generateIndices(chunkSize * chunkSize);
+
+        //the map never moves on its own
+        setMassType(Mass.Type.INFINITE);
+    }
+
+    /**
+     * @return the tile ID at the given position
+     */
+    public int getTile(int x, int y) {
+        checkBounds(x, y);
+        return chunkAt(x, y).tiles[localIndex(x, y)];
+    }
+
+    /**
+     * change a single tile. Only the chunk holding the tile gets rebuilt.
+     *
+     * @param x  the column of the tile
+     * @param y  the row of the tile
+     * @param id the new tile ID; 0 for an empty tile
+     */
+    public void setTile(int x, int y, int id) {
+        checkBounds(x, y);
+        checkTileId(id);
+
+        Chunk c = chunkAt(x, y);
+        int i = localIndex(x, y);
+        int old = c.tiles[i];
+        if (old == id)
+            return;
+
+        c.tiles[i] = id;
+        c.tileCount += (id != 0 ? 1 : 0) - (old != 0 ? 1 : 0);
+        c.version++;
+
+        if (solid[old] != solid[id])
+            collidersChanged = true;
+    }
+
+    /**
+     * fill a rectangular area of the map
+     *
+     * @param x0 the first column
+     * @param y0 the first row
+     * @param x1 the last column, inclusive
+     * @param y1 the last row, inclusive
+     * @param id the tile ID
+     */
+    public void fill(int x0, int y0, int x1, int y1, int id) {
+        for (int y = y0; y <= y1; y++)
+            for (int x = x0; x <= x1; x++)
+                setTile(x, y, id);
+    }
+
+    /**
+     * mark a tile ID as solid or not. Solid tiles collide with the other objects of the universe.
+     */
+    public void setSolid(int id, boolean isSolid) {
+        checkTileId(id);
+        if (solid[id] != isSolid) {
+            solid[id] = isSolid;
+            collidersChanged = true;
+        }
+    }
+
+    public boolean isSolid(int id) {
+        checkTileId(id);
+        return solid[id];
+    }
+
+    @Override
+    public void update(double delta) {
+        if (collidersChanged)
+            rebuildColliders();
+    }
+
+    //the chunks are already baked in world units so there is no scale
+    @Override
+    float getRenderScaleX() {
+        return 1;
+    }
+
+    @Override
+    float getRenderScaleY() {
+        return 1;
+    }
+
+    @Override
+    public void render(Matrix4f transformation) {
+        Shader shader = getShader();
+
+        texUniform = resolve(texUniform, "tex");
+        texUniform.set(1);
+        //the baked coordinates already address the atlas page
+        regionUniform = resolve(regionUniform, "region");
+        regionUniform.set(0, 0, 1, 1);
+        mvUniform = resolve(mvUniform, "mv_matrix");
+        mvUniform.set(transformation);
+
+        shader.bind();
+
+        AABB view = getUniverse().isCulling() ? getUniverse().getMainCamera().getVisibleArea() : null;
+        visibleChunks = 0;
+
+        for (Chunk c : chunks) {
+            if (c.tileCount == 0 || (view != null && !intersects(c, transformation, view)))
+                continue;
+
+            bake(c);
+            createMesh(c);
+            drawChunk(c, c.mesh, c.baked, c.bakedCount, c.bakedVersion, page);
+            visibleChunks++;
+        }
+    }
+
+    /**
+     * record the visible chunks. The tiles get baked and the meshes created right away, the recorded draw only
+     * uploads and draws the baked vertices into the captured meshes. Meshes deleted in the meantime because the map
+     * left the universe are skipped.
+     */
+    @Override
+    protected RenderSnapshot.Draw record(Matrix4f transformation) {
+        AABB view = getUniverse().isCulling() ? getUniverse().getMainCamera().getVisibleArea() : null;
+        visibleChunks = 0;
+
+        int count = 0;
+        for (Chunk c : chunks)
+            if (c.tileCount > 0 && (view == null || intersects(c, transformation, view)))
+                count++;
+
+        Chunk[] visible = new Chunk[count];
+        VertexArray[] meshes = new VertexArray[count];
+        ByteBuffer[] vertices = new ByteBuffer[count];
+        int[] tileCounts = new int[count];
+        int[] versions = new int[count];
+
+        for (Chunk c : chunks) {
+            if (c.tileCount == 0 || (view != null && !intersects(c, transformation, view)))
+                continue;
+
+            bake(c);
+            createMesh(c);
+            visible[visibleChunks] = c;
+            meshes[visibleChunks] = c.mesh;
+            vertices[visibleChunks] = c.baked;
+            tileCounts[visibleChunks] = c.bakedCount;
+            versions[visibleChunks] = c.bakedVersion;
+            visibleChunks++;
+        }
+
+        Shader shader = getShader();
+        Texture tex = page;
+        Matrix4f m = new Matrix4f(transformation);
+
+        return () -> {
+            shader.uniform("tex").set(1);
+            shader.uniform("region").set(0, 0, 1, 1);
+            shader.uniform("mv_matrix").set(m);
+            shader.bind();
+
+            for (int i = 0; i < visible.length; i++)
+                drawChunk(visible[i], meshes[i], vertices[i], tileCounts[i], versions[i], tex);
+        };
+    }
+
+    @Override
+    protected Texture getRenderTexture() {
+        return page;
+    }
+
+    @Override
+    protected boolean isCullable() {
+        //the chunks are culled one by one
+        return false;
+    }
+
+    @Override
+    protected void onAddToUniverse() {
+        //NOP
+    }
+
+    @Override
+    protected void onRemoveFromUniverse() {
+        //free the meshes; they get baked again if the map is added back
+        for (Chunk c : chunks) {
+            if (c.mesh != null) {
+                VertexArrayManager.current().remove(c.key);
+                c.mesh = null;
+            }
+        }
+    }
+
+    //build the vertices of a chunk on the CPU if its tiles changed since the last bake; no GL calls
+    private void bake(Chunk c) {
+        if (c.bakedVersion == c.version)
+            return;
+
+        ByteBuffer vertices = FORMAT.allocate(c.tileCount * 4);
+
+        for (int ty = 0; ty < chunkSize; ty++) {
+            for (int tx = 0; tx < chunkSize; tx++) {
+                int id = c.tiles[ty * chunkSize + tx];
+                if (id == 0)
+                    continue;
+
+                Texture t = tileTexture(id);
+
+                float x0 = (c.x * chunkSize + tx) * tileSize;
+                float y0 = (c.y * chunkSize + ty) * tileSize;
+                float x1 = x0 + tileSize;
+                float y1 = y0 + tileSize;
+
+                //same corner layout as VertexArrayManager.STANDARD.SQUARE
+                vertices.putFloat(x0).putFloat(y0).putFloat(t.getU0()).putFloat(t.getV0());
+                vertices.putFloat(x1).putFloat(y0).putFloat(t.getU1()).putFloat(t.getV0());
+                vertices.putFloat(x1).putFloat(y1).putFloat(t.getU1()).putFloat(t.getV1());
+                vertices.putFloat(x0).putFloat(y1).putFloat(t.getU0()).putFloat(t.getV1());
+            }
+        }
+        vertices.flip();
+
+        //a new buffer for every bake; recorded draws may still hold the old one
+        c.baked = vertices;
+        c.bakedCount = c.tileCount;
+        c.bakedVersion = c.version;
+    }
+
+    //create the mesh of a chunk; by the thread adding and removing the map, so a removed map never gets one again
+    private void createMesh(Chunk c) {
+        if (c.mesh == null) {
+            c.mesh = VertexArrayManager.current().create(c.key, FORMAT, FORMAT.allocate(0),
+                    BufferUtils.createIndexBuffer(indices, chunkSize * chunkSize * 4));
+        }
+    }
+
+    //upload the baked vertices if the mesh is older and draw the chunk; only called by the thread owning the context
+    private void drawChunk(Chunk c, VertexArray mesh, ByteBuffer vertices, int tileCount, int version, Texture tex) {
+        //the map left the universe after the draw was recorded
+        if (!mesh.isActive())
+            return;
+
+        if (c.uploaded != mesh || c.meshVersion != version) {
+            mesh.updateVertices(vertices.duplicate(), tileCount * 6);
+            c.uploaded = mesh;
+            c.meshVersion = version;
+        }
+
+        tex.bind();
+        mesh.bind();
+        mesh.render();
+    }
+
+    private Texture tileTexture(int id) {
+        Texture t = tileSet[id];
+        if (t == null || !t.isActive()) {
+            Logger.log(TileMap.class, "Tile ID " + id + " has no active texture; was the atlas packed?", Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Tile ID " + id + " has no active texture; was the atlas packed?");
+        }
+
+        if (page == null) {
+            page = t;
+        } else if (page.getID() != t.getID()) {
+            Logger.log(TileMap.class, "Tile ID " + id + " is not on the same atlas page as the other tiles", Logger.LEVEL.ERROR);
+            throw new IllegalStateException("Tile ID " + id + " is not on the same atlas page as the other tiles");
+        }
+
+        return t;
+    }
+
+    //merge the solid tiles row by row into maximal rectangles
+    private void rebuildColliders() {
+        getBody().removeAllFixtures();
+
+        boolean[] covered = new boolean[width * height];
+        colliderCount = 0;
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (covered[y * width + x] || !solidAt(x, y))
+                    continue;
+
+                int w = 1;
+                while (x + w < width && !covered[y * width + x + w] && solidAt(x + w, y))
+                    w++;
+
+                int h = 1;
+                grow:
+                while (y + h < height) {
+                    for (int i = 0; i < w; i++)
+                        if (covered[(y + h) * width + x + i] || !solidAt(x + i, y + h))
+                            break grow;
+                    h++;
+                }
+
+                for (int j = 0; j < h; j++)
+                    for (int i = 0; i < w; i++)
+                        covered[(y + j) * width + x + i] = true;
+
+                org.dyn4j.geometry.Rectangle r = new org.dyn4j.geometry.Rectangle(w * tileSize, h * tileSize);
+                r.translate((x + w / 2.0) * tileSize, (y + h / 2.0) * tileSize);
+                addFixture(r);
+                colliderCount++;
+            }
+        }
+
+        setMass(Mass.Type.INFINITE);
+        collidersChanged = false;
+    }
+
+    private boolean solidAt(int x, int y) {
+        return solid[chunkAt(x, y).tiles[localIndex(x, y)]];
+    }
+
+    //test the world space bounds of the chunk against the view
+    private boolean intersects(Chunk c, Matrix4f m, AABB view) {
+        float x0 = c.x * chunkSize * tileSize;
+        float y0 = c.y * chunkSize * tileSize;
+        float x1 = x0 + chunkSize * tileSize;
+        float y1 = y0 + chunkSize * tileSize;
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < 4; i++) {
+            float lx = (i & 1) == 0 ? x0 : x1;
+            float ly = (i & 2) == 0 ? y0 : y1;
+            float wx = m.m00 * lx + m.m10 * ly + m.m30;
+            float wy = m.m01 * lx + m.m11 * ly + m.m31;
+
+            minX = Math.min(minX, wx);
+            minY = Math.min(minY, wy);
+            maxX = Math.max(maxX, wx);
+            maxY = Math.max(maxY, wy);
+        }
+
+        return maxX >= view.getMinX() && minX <= view.getMaxX() && maxY >= view.getMinY() && minY <= view.getMaxY();
+    }
+
+    private Chunk chunkAt(int x, int y) {
+        return chunks[(y / chunkSize) * chunksX + x / chunkSize];
+    }
+
+    private int localIndex(int x, int y) {
+        return (y % chunkSize) * chunkSize + x % chunkSize;
+    }
+
+    private void checkBounds(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            Logger.log(TileMap.class, "Tile (" + x + ", " + y + ") is outside of the map", Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tile (" + x + ", " + y + ") is outside of the map");
+        }
+    }
+
+    private void checkTileId(int id) {
+        if (id < 0 || id >= tileSet.length) {
+            Logger.log(TileMap.class, "Tile ID " + id + " is not part of the tile set", Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Tile ID " + id + " is not part of the tile set");
+        }
+    }
+
+    private static int[] generateIndices(int tiles) {
+        int[] indices = new int[tiles * 6];
+        for (int i = 0; i < tiles; i++) {
+            int o = i * 4;
+            indices[i * 6 + 0] = o + 3;
+            indices[i * 6 + 1] = o + 2;
+            indices[i * 6 + 2] = o + 1;
+            indices[i * 6 + 3] = o + 1;
+            indices[i * 6 + 4] = o;
+            indices[i * 6 + 5] = o + 3;
+        }
+        return indices;
+    }
+
+    private static class Chunk {
+        private final int x, y;
+        private final int[] tiles;
+        private final String key;
+
+        private int tileCount;
+        //bumped by every change of the tiles
+        private int version;
+
+        //the vertices of the last bake; written by the simulation
+        private ByteBuffer baked;
+        private int bakedCount;
+        private int bakedVersion = -1;
+
+        //created and removed by the thread adding and removing the map
+        private VertexArray mesh;
+        //the mesh and the version last uploaded; only touched by the thread owning the context
+        private VertexArray uploaded;
+        private int meshVersion = -1;
+
+        private Chunk(int x, int y, int size, String key) {
+            this.x = x;
+            this.y = y;
+            this.tiles = new int[size * size];
+            this.key = key;
+        }
+    }
+}
@@ -25,20 +25,33 @@
 package com.nzelot.engine.graphics.scenegraph;
 
 import com.nzelot.engine.game.Game;
+import com.nzelot.engine.game.JobSystem;
 import com.nzelot.engine.graphics.Window;
 import com.nzelot.engine.graphics.rendering.*;
+import com.nzelot.engine.utils.logging.Logger;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.experimental.Delegate;
 import org.dyn4j.collision.Bounds;
 import org.dyn4j.dynamics.Settings;
+import org.dyn4j.dynamics.Body;
 import org.dyn4j.dynamics.World;
 import org.dyn4j.dynamics.joint.Joint;
+import org.dyn4j.geometry.AABB;
+import org.dyn4j.geometry.Transform;
 import org.dyn4j.geometry.Vector2;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
+import org.joml.Vector4f;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * The root entity of the scene graph. it has no parent and holds the physics world but is not part of it
@@ -52,20 +65,67 @@ public class Universe {
 
     final Vector<GameObject> gameObjects;
 
+    /** the per frame state of the objects, stored column wise */
+    private final @Getter EntityStore entities;
+
     private final @Getter Camera mainCamera;
 
     private final VertexArray vao;
     private final Shader shader;
+    private final Uniform texUniform;
+    private final Uniform mvUniform;
     private final Matrix4f projMat;
     private final Matrix4f camMat;
     private final Matrix4f modMat;
 
     private Texture test;
 
+    //the objects split by whether their update may run in parallel
+    private GameObject[] parallelUpdates;
+    private GameObject[] sequentialUpdates;
+
+    //structural changes requested while updating; applied in the commit phase
+    private boolean updating;
+    private final Queue<PendingChange> pendingChanges;
+
     private boolean reorderObjects;
+    //something besides the transforms changed what is rendered
+    private boolean renderStateChanged;
+
+    /**
+     * order the draws by their render state within each z-index; disabled by default. There is no depth test, so
+     * only enable it if opaque objects sharing a z-index do not overlap: the state order replaces their insertion order
+     */
+    private @Getter @Setter boolean stateSorting;
+    private final RenderQueue renderQueue;
+
+    /** only render objects within the view of the main camera; enabled by default */
+    private @Getter @Setter boolean culling;
+    private final List<Body> visibleBodies;
+    private final List<GameObject> uncullable;
+    private @Getter int visibleCount;
+    private @Getter int culledCount;
+
+    //the objects to draw this frame; the render queue refers to them by index
+    private GameObject[] drawList;
+    //the dense indices of the entities of drawList
+    private int[] drawIndex;
+    private int drawCount;
+    //receives the colors of the quads submitted from the entity store
+    private final Vector4f quadColor = new Vector4f();
+    private int nextSequence;
+
+    /** the way the built-in shapes get rendered; <code>BATCHED</code> by default */
+    private @Getter @Setter @NonNull RenderPath renderPath;
 
     private @Delegate(types = WorldDelegates.class) World physics;
 
+    //finds the objects by name, type and tag
+    private final ObjectIndex index;
+
+    //the scratch space of the spatial queries; one per thread as parallel updates may query as well
+    private final ThreadLocal<QueryScratch> queryScratch;
+
     //fixme this is only temporary i think. only until i implemented the use of FBO's
     private final @Getter Game game;
 
@@ -75,39 +135,173 @@ public class Universe {
         this.game = game;
 
         gameObjects = new Vector<>(32);
+        entities = new EntityStore(32);
+        index = new ObjectIndex();
 
         Window w = game.getWindow();
         mainCamera = new Camera(new Vector3f(), w.getWidth(), w.getHeight(), 20);
 
-        vao = VertexArrayManager.instance.get(VertexArrayManager.STANDARD.SQUARE);
-        shader = ShaderManager.instance.get(ShaderManager.STANDARD.SQUARE_TEXTURE);
+        vao = VertexArrayManager.current().get(VertexArrayManager.STANDARD.SQUARE);
+        shader = ShaderManager.current().get(ShaderManager.STANDARD.SQUARE_TEXTURE);
         projMat = new Matrix4f().setOrtho2D(-w.getWidth() / 2, w.getWidth() / 2, -w.getHeight() / 2, w.getHeight() / 2);
         camMat = new Matrix4f().identity();
         modMat = new Matrix4f().scaling(w.getWidth(), w.getHeight(), 0);
 
-        shader.setUniform1i("tex", 1);
-        shader.setUniformMat4f("pr_matrix", projMat);
-        shader.setUniformMat4f("cm_matrix", camMat);
-        shader.setUniformMat4f("mv_matrix", modMat);
+        //a headless game has no shaders
+        texUniform = shader == null ? null : shader.uniform("tex");
+        mvUniform = shader == null ? null : shader.uniform("mv_matrix");
 
-        test = TextureManager.instance.get(TextureManager.STANDARD.NOT_FOUND);
+        test = TextureManager.current().get(TextureManager.STANDARD.NOT_FOUND);
 
         reorderObjects = false;
+        renderPath = RenderPath.BATCHED;
+        stateSorting = false;
+        renderQueue = new RenderQueue(32);
+
+        culling = true;
+        visibleBodies = new ArrayList<>(32);
+        uncullable = new ArrayList<>();
+        drawList = new GameObject[32];
+        drawIndex = new int[32];
+
+        parallelUpdates = new GameObject[32];
+        sequentialUpdates = new GameObject[32];
+        pendingChanges = new ConcurrentLinkedQueue<>();
 
         physics = new World();
+        queryScratch = ThreadLocal.withInitial(QueryScratch::new);
     }
 
-    //doc
+    /**
+     * advance the simulation by one fixed step
+     *
+     * @param delta the length of the step in seconds
+     */
     public void update(double delta) {
-        physics.update(delta);
+        JobSystem jobs = game.getJobs();
+
+        jobs.begin(JobSystem.Phase.PHYSICS);
+        entities.storePrevious();
+        physics.updatev(delta);
+        jobs.end(JobSystem.Phase.PHYSICS);
+
+        jobs.begin(JobSystem.Phase.UPDATE);
+        int parallel = 0;
+        int sequential = 0;
+        for (GameObject o : gameObjects) {
+            if (o.isParallelSafe()) {
+                if (parallel == parallelUpdates.length)
+                    parallelUpdates = Arrays.copyOf(parallelUpdates, parallel << 1);
+                parallelUpdates[parallel++] = o;
+            } else {
+                if (sequential == sequentialUpdates.length)
+                    sequentialUpdates = Arrays.copyOf(sequentialUpdates, sequential << 1);
+                sequentialUpdates[sequential++] = o;
+            }
+        }
 
-        gameObjects.forEach(object -> object.updateWrap(delta));
+        updating = true;
+        try {
+            jobs.parallelFor(parallelUpdates, 0, parallel, o -> o.updateWrap(delta));
+            for (int i = 0; i < sequential; i++)
+                sequentialUpdates[i].updateWrap(delta);
+        } finally {
+            updating = false;
+            //do not hold on to removed objects
+            Arrays.fill(parallelUpdates, 0, parallel, null);
+            Arrays.fill(sequentialUpdates, 0, sequential, null);
+        }
+        jobs.end(JobSystem.Phase.UPDATE);
 
+        jobs.begin(JobSystem.Phase.COMMIT);
+        commitChanges();
         changeRenderOrder();
+        //the updates may have moved bodies as well
+        entities.pullTransforms();
+        entities.updateHierarchy();
+        jobs.end(JobSystem.Phase.COMMIT);
+    }
+
+    //apply the additions and removals requested during the update phase in the order they were requested
+    private void commitChanges() {
+        PendingChange c;
+        while ((c = pendingChanges.poll()) != null) {
+            if (c.add)
+                addObject(c.object);
+            else
+                removeObject(c.object);
+        }
+    }
+
+    /**
+     * render the universe through the main camera
+     *
+     * @param alpha the progress between the previous and the current simulation step; 1 to render the current state
+     */
+    public void render(double alpha) {
+        beginFrame();
+        MatrixBlock.current().upload(getProjectionMat(), getCameraMat());
+
+        switch (renderPath) {
+            case BATCHED:
+                renderQueued(BatchRenderer.current(), alpha);
+                break;
+            case INSTANCED:
+                renderQueued(InstanceRenderer.current(), alpha);
+                break;
+            default:
+                renderImmediate(alpha);
+        }
+
+        present();
+    }
+
+    /**
+     * record what the main camera sees into a snapshot. Called by the simulation thread if the game runs threaded.
+     *
+     * @param snapshot the snapshot to overwrite
+     * @param tick     the number of the simulation tick just finished
+     */
+    public void record(@NonNull RenderSnapshot snapshot, long tick) {
+        synchronized (gameObjects) {
+            snapshot.begin();
+            buildRenderQueue(1);
+
+            for (int i = 0; i < renderQueue.size(); i++) {
+                int e = renderQueue.get(i);
+                if (entities.submitQuad(drawIndex[e], snapshot, quadColor))
+                    continue;
+
+                GameObject o = drawList[e];
+                if (!o.batchWrap(snapshot))
+                    snapshot.drawRecorded(o.record(o.getTransMat()), o.getTransMat());
+            }
+
+            snapshot.end();
+        }
+
+        snapshot.projection.set(getProjectionMat());
+        snapshot.camera.set(getCameraMat());
+        snapshot.tick = tick;
+    }
+
+    /**
+     * render a snapshot recorded by <code>record()</code>. Called by the render thread if the game runs threaded.
+     * Snapshots are always drawn with quad renderers; <code>IMMEDIATE</code> uses the batch renderer.
+     *
+     * @param snapshot the snapshot to draw
+     */
+    public void render(@NonNull RenderSnapshot snapshot) {
+        beginFrame();
+        MatrixBlock.current().upload(snapshot.projection, snapshot.camera);
+
+        snapshot.replay(renderPath == RenderPath.INSTANCED ? InstanceRenderer.current() : BatchRenderer.current());
+
+        present();
     }
 
     //doc
-    public void render() {
+    private void beginFrame() {
         VertexArray.unbind();
         Texture.unbind();
         Shader.unbind();
@@ -118,19 +312,17 @@ public class Universe {
 
         //render to the camera fbo
         mainCamera.makeActive();
+    }
 
-        gameObjects.forEach(GameObject::renderWrap);
-
+    //doc
+    private void present() {
         mainCamera.makeInactive();
 
         //Render the main camera fbo texture to the screen
         mainCamera.getRenderTarget().bind();
-        shader.setUniform1i("tex", 1);
-        //fixme always setting these matrices is not very usable. find a better solution
-        //fixme as this also heavily influences the maximum fps
-        shader.setUniformMat4f("pr_matrix", projMat);
-        shader.setUniformMat4f("cm_matrix", camMat);
-        shader.setUniformMat4f("mv_matrix", modMat);
+        MatrixBlock.current().upload(projMat, camMat);
+        texUniform.set(1);
+        mvUniform.set(modMat);
 
         shader.bind();
         vao.bind();
@@ -139,29 +331,422 @@ public class Universe {
     }
 
     //doc
+    private void renderQueued(QuadRenderer batch, double alpha) {
+        batch.begin();
+
+        synchronized (gameObjects) {
+            buildRenderQueue(alpha);
+
+            for (int i = 0; i < renderQueue.size(); i++) {
+                int e = renderQueue.get(i);
+                //the plain quads are drawn straight from the columns
+                if (entities.submitQuad(drawIndex[e], batch, quadColor))
+                    continue;
+
+                GameObject o = drawList[e];
+                if (!o.batchWrap(batch)) {
+                    //draw everything in front of the object first to keep the painters order intact
+                    batch.flush();
+                    o.renderWrap();
+                }
+            }
+        }
+
+        batch.end();
+    }
+
+    //doc
+    private void renderImmediate(double alpha) {
+        synchronized (gameObjects) {
+            buildRenderQueue(alpha);
+
+            for (int i = 0; i < renderQueue.size(); i++)
+                drawList[renderQueue.get(i)].renderWrap();
+        }
+    }
+
+    //doc
+    private void buildRenderQueue(double alpha) {
+        collectVisible();
+        renderQueue.clear();
+
+        JobSystem jobs = game.getJobs();
+        jobs.begin(JobSystem.Phase.TRANSFORM);
+        entities.run((store, from, to) -> store.buildMatrices(from, to, alpha), jobs);
+        jobs.end(JobSystem.Phase.TRANSFORM);
+
+        int[] z = entities.getZIndex();
+        for (int i = 0; i < drawCount; i++) {
+            GameObject o = drawList[i];
+            int zIndex = z[drawIndex[i]];
+            long key = stateSorting ? o.getRenderKey(zIndex) : RenderQueue.translucentKey(zIndex, o.sequence);
+            renderQueue.add(key, i);
+        }
+
+        renderQueue.sort();
+    }
+
+    //doc
+    private void collectVisible() {
+        //do not hold on to removed objects
+        Arrays.fill(drawList, 0, drawCount, null);
+        drawCount = 0;
+        entities.clearVisible();
+
+        if (culling) {
+            //let the broadphase find everything within the view instead of testing every object
+            visibleBodies.clear();
+            physics.detect(mainCamera.getVisibleArea(), false, visibleBodies);
+
+            for (Body b : visibleBodies) {
+                Object o = b.getUserData();
+                if (o instanceof GameObject && ((GameObject) o).getUniverse() == this && ((GameObject) o).isCullable())
+                    addToDrawList((GameObject) o);
+            }
+
+            for (GameObject o : uncullable)
+                addToDrawList(o);
+        } else {
+            for (GameObject o : gameObjects)
+                addToDrawList(o);
+        }
+
+        visibleCount = drawCount;
+        culledCount = gameObjects.size() - drawCount;
+    }
+
+    //doc
+    private void addToDrawList(GameObject o) {
+        if (drawCount == drawList.length) {
+            drawList = Arrays.copyOf(drawList, drawCount << 1);
+            drawIndex = Arrays.copyOf(drawIndex, drawCount << 1);
+        }
+
+        int index = o.getEntityIndex();
+        entities.markVisible(index);
+        drawIndex[drawCount] = index;
+        drawList[drawCount++] = o;
+    }
+
+    /**
+     * add an object to the universe. Objects added while the universe is updating are added after the update phase.
+     */
     public void addObject(@NonNull GameObject gameObject){
+        if (updating) {
+            pendingChanges.add(new PendingChange(gameObject, true));
+            return;
+        }
+
+        gameObject.sequence = nextSequence++;
         gameObjects.add(gameObject);
+        renderStateChanged = true;
+        if (!gameObject.isCullable())
+            uncullable.add(gameObject);
         gameObject.setUniverse(this);
+        gameObject.attach(entities);
+        index.add(gameObject);
         physics.addBody(gameObject.getBody());
     }
 
-    //doc
+    /**
+     * remove an object from the universe. Objects removed while the universe is updating are removed after the update phase.
+     */
     public void removeObject(@NonNull GameObject gameObject){
+        if (updating) {
+            pendingChanges.add(new PendingChange(gameObject, false));
+            return;
+        }
+
         gameObject.onRemoveFromUniverse();
 
         gameObjects.remove(gameObject);
+        renderStateChanged = true;
+        uncullable.remove(gameObject);
+        index.remove(gameObject);
+        gameObject.detach();
         gameObject.setUniverse(null);
         physics.removeBody(gameObject.getBody());
     }
 
-    //doc
+    /**
+     * @return the first object added with the name or <code>null</code> if there is none
+     */
     public GameObject findByName(@NonNull String name){
-        for (GameObject o : gameObjects)
-            if(o.getName().equals(name))
-                return o;
+        return index.first(name);
+    }
+
+    /**
+     * collect all objects with a name in the order they were added
+     *
+     * @param result the collection to add the objects to; it is not cleared
+     * @return <code>result</code>
+     */
+    public <C extends Collection<? super GameObject>> C findAllByName(@NonNull String name, @NonNull C result){
+        return index.byName(name, result);
+    }
+
+    /**
+     * collect all instances of a type, including the instances of its subclasses
+     *
+     * @param result the collection to add the objects to; it is not cleared
+     * @return <code>result</code>
+     */
+    public <T, C extends Collection<? super T>> C findByType(@NonNull Class<T> type, @NonNull C result){
+        return index.byType(type, 0, result);
+    }
+
+    /**
+     * collect all instances of a type carrying all the given tags
+     *
+     * @param tags   the tags; one bit per tag
+     * @param result the collection to add the objects to; it is not cleared
+     * @return <code>result</code>
+     */
+    public <T, C extends Collection<? super T>> C findByType(@NonNull Class<T> type, long tags, @NonNull C result){
+        return index.byType(type, tags, result);
+    }
+
+    /**
+     * collect all objects carrying all the given tags
+     *
+     * @param tags   the tags; one bit per tag. No tags match no objects
+     * @param result the collection to add the objects to; it is not cleared
+     * @return <code>result</code>
+     */
+    public <C extends Collection<? super GameObject>> C findByTags(long tags, @NonNull C result){
+        return index.byTags(tags, result);
+    }
+
+    //called by an object of this universe after its name changed
+    void renamed(GameObject o, String old){
+        index.rename(o, old);
+    }
+
+    //called by an object of this universe after its tags changed
+    void retagged(GameObject o, long old){
+        index.retag(o, old);
+    }
+
+    /**
+     * collect the objects whose bounds overlap an area. The candidates come from the broadphase of the physics world,
+     * which is kept up to date by the physics step.
+     *
+     * @param area   the area in world coordinates
+     * @param result the collection to add the objects to; it is not cleared
+     * @return <code>result</code>
+     */
+    public <C extends Collection<? super GameObject>> C queryAABB(@NonNull AABB area, @NonNull C result){
+        QueryScratch s = queryScratch.get();
+        List<Body> bodies = candidates(s, area.getMinX(), area.getMinY(), area.getMaxX(), area.getMaxY());
+
+        for (int i = 0; i < bodies.size(); i++) {
+            GameObject o = objectOf(bodies.get(i));
+            if (o == null)
+                continue;
+
+            double[] b = o.getWorldBounds(s.bounds);
+            if (b[0] <= area.getMaxX() && b[2] >= area.getMinX() && b[1] <= area.getMaxY() && b[3] >= area.getMinY())
+                result.add(o);
+        }
+
+        return result;
+    }
+
+    /**
+     * collect the objects whose shape contains a point
+     *
+     * @param point  the point in world coordinates
+     * @param result the collection to add the objects to; it is not cleared
+     * @return <code>result</code>
+     */
+    public <C extends Collection<? super GameObject>> C queryPoint(@NonNull Vector2 point, @NonNull C result){
+        List<Body> bodies = candidates(queryScratch.get(), point.x, point.y, point.x, point.y);
+
+        for (int i = 0; i < bodies.size(); i++) {
+            GameObject o = objectOf(bodies.get(i));
+            if (o != null && o.getBody().contains(point))
+                result.add(o);
+        }
+
+        return result;
+    }
+
+    /**
+     * collect the objects whose bounds are within a distance of a point
+     *
+     * @param center the point in world coordinates
+     * @param radius the distance
+     * @param result the collection to add the objects to; it is not cleared
+     * @return <code>result</code>
+     */
+    public <C extends Collection<? super GameObject>> C queryRadius(@NonNull Vector2 center, double radius, @NonNull C result){
+        if (radius < 0) {
+            Logger.log(Universe.class, "Invalid radius: " + radius, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid radius: " + radius);
+        }
+
+        QueryScratch s = queryScratch.get();
+        List<Body> bodies = candidates(s, center.x - radius, center.y - radius, center.x + radius, center.y + radius);
+
+        for (int i = 0; i < bodies.size(); i++) {
+            GameObject o = objectOf(bodies.get(i));
+            if (o != null && distanceSquared(o.getWorldBounds(s.bounds), center) <= radius * radius)
+                result.add(o);
+        }
+
+        return result;
+    }
+
+    /**
+     * collect the objects closest to a point, measured to their bounds
+     *
+     * @param point       the point in world coordinates
+     * @param k           the maximum number of objects to collect
+     * @param maxDistance only objects within this distance are considered
+     * @param result      the list to add the objects to, the closest first; it is not cleared
+     * @return <code>result</code>
+     */
+    public <L extends List<? super GameObject>> L queryNearest(@NonNull Vector2 point, int k, double maxDistance, @NonNull L result){
+        if (k <= 0 || maxDistance < 0) {
+            Logger.log(Universe.class, "Invalid nearest query: k = " + k + "; max distance = " + maxDistance, Logger.LEVEL.ERROR);
+            throw new IllegalArgumentException("Invalid nearest query: k = " + k + "; max distance = " + maxDistance);
+        }
+
+        QueryScratch s = queryScratch.get();
+        int count = 0;
+        double max = maxDistance * maxDistance;
+
+        if (Double.isInfinite(maxDistance)) {
+            //the broadphase can not be asked for an infinite area
+            for (GameObject o : gameObjects)
+                count = s.addNearest(count, o, distanceSquared(o.getWorldBounds(s.bounds), point));
+        } else {
+            List<Body> bodies = candidates(s, point.x - maxDistance, point.y - maxDistance, point.x + maxDistance, point.y + maxDistance);
+            for (int i = 0; i < bodies.size(); i++) {
+                GameObject o = objectOf(bodies.get(i));
+                if (o == null)
+                    continue;
+
+                double d = distanceSquared(o.getWorldBounds(s.bounds), point);
+                if (d <= max)
+                    count = s.addNearest(count, o, d);
+            }
+        }
+
+        //k is usually small; select the closest ones one by one
+        for (int n = 0; n < k && n < count; n++) {
+            int best = n;
+            for (int i = n + 1; i < count; i++)
+                if (s.distances[i] < s.distances[best])
+                    best = i;
+            s.swap(n, best);
+            result.add(s.nearest[n]);
+        }
+
+        //do not hold on to the objects
+        Arrays.fill(s.nearest, 0, count, null);
+        return result;
+    }
+
+    /**
+     * find the object shown at a position of the window. Overlapping objects are resolved by their z-index.
+     *
+     * @param screenX the x coordinate in pixels from the left of the window
+     * @param screenY the y coordinate in pixels from the top of the window
+     * @return the top most object at the position or <code>null</code> if there is none
+     */
+    public GameObject pick(double screenX, double screenY){
+        QueryScratch s = queryScratch.get();
+        Window w = game.getWindow();
+        Vector2 p = mainCamera.screenToWorld(screenX, screenY, w.getWidth(), w.getHeight(), s.point);
+
+        GameObject top = null;
+        List<Body> bodies = candidates(s, p.x, p.y, p.x, p.y);
+        for (int i = 0; i < bodies.size(); i++) {
+            GameObject o = objectOf(bodies.get(i));
+            if (o == null || !o.getBody().contains(p))
+                continue;
+
+            //later objects are drawn on top of earlier ones with the same z-index
+            if (top == null || o.getZIndex() > top.getZIndex()
+                    || (o.getZIndex() == top.getZIndex() && o.sequence > top.sequence))
+                top = o;
+        }
+
+        return top;
+    }
+
+    //let the broadphase collect the bodies overlapping an area; the bounds it stores are slightly enlarged
+    private List<Body> candidates(QueryScratch s, double minX, double minY, double maxX, double maxY){
+        s.bodies.clear();
+        physics.detect(s.area.set(minX, minY, maxX, maxY), false, s.bodies);
+        return s.bodies;
+    }
+
+    //the object of this universe owning a body; null for foreign bodies
+    private GameObject objectOf(Body b){
+        Object o = b.getUserData();
+        if (o instanceof GameObject && ((GameObject) o).getUniverse() == this)
+            return (GameObject) o;
         return null;
     }
 
+    //the squared distance from a point to bounds given as min x, min y, max x, max y; zero inside
+    private static double distanceSquared(double[] bounds, Vector2 p){
+        double dx = Math.max(Math.max(bounds[0] - p.x, p.x - bounds[2]), 0);
+        double dy = Math.max(Math.max(bounds[1] - p.y, p.y - bounds[3]), 0);
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * fingerprint the simulation state: the transform and the velocities of every body in insertion order.
+     * Two runs fed with the same input end with the same hash as long as the simulation is deterministic.
+     *
+     * @return the hash of the current state
+     */
+    public long stateHash(){
+        long hash = 1125899906842597L;
+        for (GameObject o : gameObjects) {
+            Body b = o.getBody();
+            Transform t = b.getTransform();
+            hash = mix(hash, t.getTranslationX());
+            hash = mix(hash, t.getTranslationY());
+            hash = mix(hash, t.getRotation());
+            hash = mix(hash, b.getLinearVelocity().x);
+            hash = mix(hash, b.getLinearVelocity().y);
+            hash = mix(hash, b.getAngularVelocity());
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, double value){
+        return 31 * hash + Double.doubleToLongBits(value);
+    }
+
+    /**
+     * @return the number of objects whose transform changed during the last simulation step
+     */
+    public int getMovedCount(){
+        return entities.getMovedCount();
+    }
+
+    /**
+     * flag a change of what is rendered which the universe can not see by itself, e.g. a changed texture. Objects
+     * moving, being added or removed and changes of their z-index, color or frame are noticed without it.
+     */
+    public void requestRedraw(){
+        renderStateChanged = true;
+    }
+
+    /**
+     * @return true if the last simulation step changed what is rendered; resets the changes requested so far
+     */
+    public boolean pollChanged(){
+        boolean changed = renderStateChanged | mainCamera.pollChanged() | entities.getMovedCount() > 0;
+        renderStateChanged = false;
+        return changed;
+    }
+
     //doc
     public Matrix4f getProjectionMat(){
         return mainCamera.getProjectionMat();
@@ -175,6 +760,7 @@ public class Universe {
     //doc
     void zIndexChanged(){
         reorderObjects = true;
+        renderStateChanged = true;
     }
 
     //doc
@@ -198,6 +784,72 @@ public class Universe {
         }
     }
 
+    private static class QueryScratch {
+        private final QueryArea area = new QueryArea();
+        private final List<Body> bodies = new ArrayList<>(32);
+        private final double[] bounds = new double[4];
+        private final Vector2 point = new Vector2();
+
+        private GameObject[] nearest = new GameObject[16];
+        private double[] distances = new double[16];
+
+        private int addNearest(int count, GameObject o, double distance) {
+            if (count == nearest.length) {
+                nearest = Arrays.copyOf(nearest, count << 1);
+                distances = Arrays.copyOf(distances, count << 1);
+            }
+            nearest[count] = o;
+            distances[count] = distance;
+            return count + 1;
+        }
+
+        private void swap(int a, int b) {
+            GameObject o = nearest[a];
+            nearest[a] = nearest[b];
+            nearest[b] = o;
+            double d = distances[a];
+            distances[a] = distances[b];
+            distances[b] = d;
+        }
+    }
+
+    //an area which is moved around instead of allocating a new one for every query
+    private static class QueryArea extends AABB {
+        private QueryArea() {
+            super(0, 0, 0, 0);
+        }
+
+        private AABB set(double minX, double minY, double maxX, double maxY) {
+            min.x = minX;
+            min.y = minY;
+            max.x = maxX;
+            max.y = maxY;
+            return this;
+        }
+    }
+
+    private static class PendingChange {
+        private final GameObject object;
+        private final boolean add;
+
+        private PendingChange(GameObject object, boolean add) {
+            this.object = object;
+            this.add = add;
+        }
+    }
+
+    /**
+     * the ways to render the objects of the universe
+     */
+    public enum RenderPath {
+        /** every object issues its own draw call */
+        IMMEDIATE,
+        /** the built-in shapes are collected into a streaming vertex buffer; one draw call per texture */
+        BATCHED,
+        /** the built-in shapes are drawn with hardware instancing; one draw call per shader and texture */
+        INSTANCED
+    }
+
     //doc
     private interface WorldDelegates {
         boolean removeJoint(Joint joint);
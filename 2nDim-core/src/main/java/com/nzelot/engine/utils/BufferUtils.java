@@ -45,6 +45,12 @@ public class BufferUtils {
         return result;
     }
 
+    public static ShortBuffer createShortBuffer(@NonNull short[] array) {
+        ShortBuffer result = ByteBuffer.allocateDirect(array.length << 1).order(ByteOrder.nativeOrder()).asShortBuffer();
+        result.put(array).flip();
+        return result;
+    }
+
     public static FloatBuffer createFloatBuffer(@NonNull float[] array) {
         FloatBuffer result = ByteBuffer.allocateDirect(array.length << 2).order(ByteOrder.nativeOrder()).asFloatBuffer();
         result.put(array).flip();
@@ -57,4 +63,65 @@ public class BufferUtils {
         return result;
     }
 
+    /**
+     * store indices in the narrowest type able to address all the vertices
+     *
+     * @param indices     the indices
+     * @param vertexCount the number of vertices the indices refer to
+     * @return a <code>ByteBuffer</code>, <code>ShortBuffer</code> or <code>IntBuffer</code> holding the unsigned indices
+     */
+    public static Buffer createIndexBuffer(@NonNull int[] indices, int vertexCount) {
+        if (vertexCount <= 0x100) {
+            ByteBuffer result = ByteBuffer.allocateDirect(indices.length).order(ByteOrder.nativeOrder());
+            for (int i : indices)
+                result.put((byte) i);
+            result.flip();
+            return result;
+        }
+
+        if (vertexCount <= 0x10000) {
+            ShortBuffer result = ByteBuffer.allocateDirect(indices.length << 1).order(ByteOrder.nativeOrder()).asShortBuffer();
+            for (int i : indices)
+                result.put((short) i);
+            result.flip();
+            return result;
+        }
+
+        return createIntBuffer(indices);
+    }
+
+    /**
+     * convert a float into the bits of a IEEE 754 half precision float, rounding to the nearest value
+     *
+     * @param f the float
+     * @return the half float bits
+     */
+    public static short toHalfFloat(float f) {
+        int bits = Float.floatToIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int val = (bits & 0x7fffffff) + 0x1000;
+
+        //too large for a half, infinity or NaN
+        if (val >= 0x47800000) {
+            if ((bits & 0x7fffffff) >= 0x47800000) {
+                if (val < 0x7f800000)
+                    return (short) (sign | 0x7c00);
+                return (short) (sign | 0x7c00 | (bits & 0x007fffff) >>> 13);
+            }
+            return (short) (sign | 0x7bff);
+        }
+
+        //normalized half
+        if (val >= 0x38800000)
+            return (short) (sign | (val - 0x38000000) >>> 13);
+
+        //too small even for a denormalized half
+        if (val < 0x33000000)
+            return (short) sign;
+
+        //denormalized half
+        val = (bits & 0x7fffffff) >>> 23;
+        return (short) (sign | ((bits & 0x7fffff | 0x800000) + (0x800000 >>> (val - 102))) >>> (126 - val));
+    }
+
 }
@@ -0,0 +1,25 @@
+#version 330 core
+
+layout (location = 0) out vec4 color;
+
+in DATA {
+    vec2 tc;
+    vec4 col;
+    flat float mode;
+} vert_in;
+
+uniform sampler2D tex;
+
+//mode: 0 = colored; 1 = textured; 2 = colored circle
+void main()
+{
+    if(vert_in.mode > 1.5) {
+        vec2 coord = vert_in.tc - vec2(0.5);
+        if(coord.x * coord.x + coord.y * coord.y > 0.25)
+            discard;
+        color = vert_in.col;
+    } else if(vert_in.mode > 0.5)
+        color = texture(tex, vert_in.tc);
+    else
+        color = vert_in.col;
+}
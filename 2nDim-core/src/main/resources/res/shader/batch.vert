@@ -0,0 +1,26 @@
+#version 330 core
+
+layout (location = 0) in vec4 position;
+layout (location = 1) in vec2 tc;
+layout (location = 2) in vec4 col;
+layout (location = 3) in float mode;
+
+layout (std140) uniform Matrices {
+    mat4 pr_matrix;
+    mat4 cm_matrix;
+};
+
+out DATA {
+    vec2 tc;
+    vec4 col;
+    flat float mode;
+} frag_out;
+
+//the position already is in world space
+void main()
+{
+	gl_Position = pr_matrix * cm_matrix * position;
+    frag_out.tc = tc;
+    frag_out.col = col;
+    frag_out.mode = mode;
+}
@@ -0,0 +1,30 @@
+#version 330 core
+
+layout (location = 0) in vec4 position;
+layout (location = 1) in vec2 tc;
+
+//per instance: the 2x2 rotation and scale part and the translation of the model matrix
+layout (location = 4) in vec4 inst_xform;
+layout (location = 5) in vec2 inst_pos;
+//per instance: either the color or the texture region (u0, v0, u1, v1)
+layout (location = 6) in vec4 inst_data;
+
+layout (std140) uniform Matrices {
+    mat4 pr_matrix;
+    mat4 cm_matrix;
+};
+
+out DATA {
+    vec2 tc;
+    flat vec4 data;
+} frag_out;
+
+void main()
+{
+    vec2 world = vec2(inst_xform.x * position.x + inst_xform.z * position.y,
+                      inst_xform.y * position.x + inst_xform.w * position.y) + inst_pos;
+
+	gl_Position = pr_matrix * cm_matrix * vec4(world, 0.0, 1.0);
+    frag_out.tc = tc;
+    frag_out.data = inst_data;
+}
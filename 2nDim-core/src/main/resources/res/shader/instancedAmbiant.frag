@@ -0,0 +1,13 @@
+#version 330 core
+
+layout (location = 0) out vec4 color;
+
+in DATA {
+    vec2 tc;
+    flat vec4 data;
+} vert_in;
+
+void main()
+{
+    color = vert_in.data;
+}
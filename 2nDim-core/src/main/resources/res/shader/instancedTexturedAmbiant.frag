@@ -0,0 +1,16 @@
+#version 330 core
+
+layout (location = 0) out vec4 color;
+
+in DATA {
+    vec2 tc;
+    flat vec4 data;
+} vert_in;
+
+uniform sampler2D tex;
+
+//data holds the texture region: {0, 1} = lower left; {2, 3} = upper right
+void main()
+{
+    color = texture(tex, mix(vert_in.data.xy, vert_in.data.zw, vert_in.tc));
+}
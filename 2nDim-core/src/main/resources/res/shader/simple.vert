@@ -2,8 +2,11 @@
 
 layout (location = 0) in vec4 position;
 
-uniform mat4 pr_matrix;
-uniform mat4 cm_matrix;
+layout (std140) uniform Matrices {
+    mat4 pr_matrix;
+    mat4 cm_matrix;
+};
+
 uniform mat4 mv_matrix = mat4(1.0);
 
 
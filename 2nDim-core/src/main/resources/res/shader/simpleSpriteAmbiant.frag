@@ -12,9 +12,11 @@ in DATA {
 //{3} = tex heigth
 uniform vec4 sprite;
 uniform sampler2D tex;
+//the atlas region covered by the texture: xy = lower corner, zw = upper corner
+uniform vec4 region = vec4(0.0, 0.0, 1.0, 1.0);
 
 void main()
 {
     vec2 coord = vec2((sprite[1] + vert_in.tc[0]) * sprite[2], (sprite[0] + 1 - vert_in.tc[1]) * sprite[3]);
-    color = texture(tex, coord);
+    color = texture(tex, mix(region.xy, region.zw, coord));
 }
\ No newline at end of file
@@ -3,8 +3,11 @@
 layout (location = 0) in vec4 position;
 layout (location = 1) in vec2 tc;
 
-uniform mat4 pr_matrix;
-uniform mat4 cm_matrix;
+layout (std140) uniform Matrices {
+    mat4 pr_matrix;
+    mat4 cm_matrix;
+};
+
 uniform mat4 mv_matrix = mat4(1.0);
 
 out DATA {
@@ -7,8 +7,10 @@ in DATA {
 } vert_in;
 
 uniform sampler2D tex;
+//the atlas region covered by the texture: xy = lower corner, zw = upper corner
+uniform vec4 region = vec4(0.0, 0.0, 1.0, 1.0);
 
 void main()
 {
-    color = texture(tex, vert_in.tc);
+    color = texture(tex, mix(region.xy, region.zw, vert_in.tc));
 }
\ No newline at end of file
@@ -25,6 +25,8 @@
 package com.nzelot.sandbox;
 
 import com.nzelot.engine.game.Game;
+import com.nzelot.engine.game.InputRecorder;
+import com.nzelot.engine.game.InputReplay;
 import com.nzelot.engine.game.Runtime;
 import com.nzelot.engine.graphics.rendering.Color;
 import com.nzelot.engine.graphics.scenegraph.*;
@@ -48,7 +50,29 @@ public class Sandbox {
         Logger.setCurrentOutputLevel(Logger.LEVEL.INFO);
         Logger.log(Sandbox.class, "Welcome to the Sandbox!", Logger.LEVEL.INFO);
 
-        Game g = new Game(1280, 720, false, "2nDim Sandbox! Enjoy :)") {
+        String mode = args.length > 0 ? args[0] : "";
+
+        //replay a recorded session without a window as fast as possible: --replay <file>
+        if (mode.equals("--replay")) {
+            new InputReplay(args[1]).run(createGame());
+            return;
+        }
+
+        Game g = createGame();
+
+        //run without a window for a number of ticks: --headless [ticks]
+        if (mode.equals("--headless"))
+            g.setHeadless(args.length > 1 ? Long.parseLong(args[1]) : 10000);
+
+        //record the input of the session: --record <file>
+        if (mode.equals("--record"))
+            g.setInputRecorder(new InputRecorder(args[1]));
+
+        Runtime.runGame(g);
+    }
+
+    private static Game createGame() {
+        return new Game(1280, 720, false, "2nDim Sandbox! Enjoy :)") {
 
             private Vehicle vehic;
             private GameObject floor;
@@ -56,9 +80,11 @@ public class Sandbox {
 
             @Override
             protected Universe initGame() {
-                GL11.glEnable(GL11.GL_BLEND);
-                GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
-                GL13.glActiveTexture(GL13.GL_TEXTURE1);
+                if (!isHeadless()) {
+                    GL11.glEnable(GL11.GL_BLEND);
+                    GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+                    GL13.glActiveTexture(GL13.GL_TEXTURE1);
+                }
 
                 Universe universe = new Universe(this);
                 //welcome to the moon :D
@@ -119,8 +145,6 @@ public class Sandbox {
 
             }
         };
-
-        Runtime.runGame(g);
     }
 
     public static Color randomColor(){